@@ -0,0 +1,24 @@
+package org.jenkinsci.plugins.buildaliassetter;
+
+import hudson.util.FormValidation;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Validation of alias candidates of each kind.
+ */
+@State(Scope.Benchmark)
+public class AliasValidationBenchmark {
+
+    @Param({ "release-1.480.3-SNAPSHOT", "1480", "99999999999", "lastSuccessfulBuild" })
+    public String candidate;
+
+    @Benchmark
+    public FormValidation validateAlias() {
+
+        return AliasProvider.validateAlias(candidate);
+    }
+}
@@ -0,0 +1,41 @@
+package org.jenkinsci.plugins.buildaliassetter;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+/**
+ * Run all benchmarks of the plugin.
+ *
+ * Invoked by <tt>mvn test -Pbenchmark</tt>, results are written to
+ * <tt>target/jmh-report.json</tt>. Use <tt>-Dbenchmark.include=regexp</tt>
+ * to run some of them only.
+ */
+public class BenchmarkRunner {
+
+    @Test
+    public void runBenchmarks() throws Exception {
+
+        final Options options = new OptionsBuilder()
+                .include(System.getProperty("benchmark.include", BenchmarkRunner.class.getPackage().getName() + ".*Benchmark"))
+                .mode(org.openjdk.jmh.annotations.Mode.AverageTime)
+                .timeUnit(TimeUnit.NANOSECONDS)
+                .warmupIterations(3)
+                .warmupTime(TimeValue.seconds(1))
+                .measurementIterations(5)
+                .measurementTime(TimeValue.seconds(1))
+                .forks(1)
+                .shouldFailOnError(true)
+                .resultFormat(ResultFormatType.JSON)
+                .result("target/jmh-report.json")
+                .build()
+        ;
+
+        new Runner(options).run();
+    }
+}
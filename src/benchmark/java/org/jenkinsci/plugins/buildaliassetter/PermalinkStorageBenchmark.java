@@ -0,0 +1,146 @@
+package org.jenkinsci.plugins.buildaliassetter;
+
+import hudson.util.XStream2;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+
+import org.apache.commons.io.FileUtils;
+import org.mockito.internal.util.reflection.Whitebox;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import hudson.model.PermalinkProjectAction.Permalink;
+
+/**
+ * Storage operations on a job with given number of aliased builds.
+ *
+ * Every build carries an alias unique to it and two aliases shared with
+ * other builds, the way version and branch aliases usually are.
+ */
+@State(Scope.Benchmark)
+public class PermalinkStorageBenchmark {
+
+    @Param({ "10", "1000", "100000" })
+    public int builds;
+
+    private PermalinkStorage storage;
+    private Queue<?> journal;
+    private XStream2 xstream;
+    private String xml;
+    private File dir;
+    private AliasStore store;
+    private Map<Integer, List<String>> content;
+
+    private final LinkedHashSet<String> newAliases = new LinkedHashSet<String>(Arrays.asList("new-alias", "branch-0"));
+    private final List<Integer> newBuild = Collections.singletonList(0);
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+
+        storage = new PermalinkStorage();
+        content = new TreeMap<Integer, List<String>>();
+        for (int i = 1; i <= builds; i++) {
+
+            final LinkedHashSet<String> aliases = aliases(i);
+            storage.addAliases(i, aliases, false);
+            content.put(i, Arrays.asList(aliases.toArray(new String[aliases.size()])));
+        }
+
+        journal = (Queue<?>) Whitebox.getInternalState(storage, "journal");
+
+        xstream = new XStream2();
+        xml = xstream.toXML(storage);
+
+        dir = Files.createTempDirectory("alias-store-benchmark").toFile();
+        store = new AliasStore(dir);
+        store.compact(content);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+
+        FileUtils.deleteDirectory(dir);
+    }
+
+    private static LinkedHashSet<String> aliases(final int buildNumber) {
+
+        return new LinkedHashSet<String>(Arrays.asList(
+                "build-" + buildNumber, "release-" + (buildNumber / 100), "branch-" + (buildNumber % 10)
+        ));
+    }
+
+    @Benchmark
+    public List<Permalink> getPermalinks() {
+
+        return storage.getPermalinks();
+    }
+
+    @Benchmark
+    public List<Permalink> getPermalinksAfterModification() {
+
+        addAndDelete();
+        return storage.getPermalinks();
+    }
+
+    @Benchmark
+    public Permalink resolve() {
+
+        return storage.resolve("release-0");
+    }
+
+    /**
+     * Tag a build with a new and a shared alias and delete it again, so the storage size stays the same.
+     */
+    @Benchmark
+    public void addAndDeleteAliases() {
+
+        addAndDelete();
+    }
+
+    private void addAndDelete() {
+
+        storage.addAliases(0, newAliases, true);
+        storage.deleteAliases(newBuild);
+
+        // Storage without a job is never saved
+        journal.clear();
+    }
+
+    @Benchmark
+    public Object xstreamRoundTrip() {
+
+        return xstream.fromXML(xstream.toXML(storage));
+    }
+
+    @Benchmark
+    public Object xstreamUnmarshal() {
+
+        return xstream.fromXML(xml);
+    }
+
+    @Benchmark
+    public Object aliasStoreRoundTrip() throws Exception {
+
+        store.compact(content);
+        return store.read();
+    }
+
+    @Benchmark
+    public Object aliasStoreRead() throws Exception {
+
+        return store.read();
+    }
+}
@@ -23,26 +23,36 @@
  */
 package org.jenkinsci.plugins.buildaliassetter;
 
+import hudson.Util;
 import hudson.model.Job;
 import hudson.model.PermalinkProjectAction.Permalink;
 import hudson.model.Run;
 
+import javax.annotation.CheckForNull;
+
 /**
  * An Alias for a build
  *
  * @author ogondza
  */
-/*package*/ class Alias extends Permalink {
+public class Alias extends Permalink {
 
     private final String name;
     private final int buildNumber;
+    private final @CheckForNull BuildMetadata metadata;
 
     public Alias(final int buildNumber, final String name) {
 
+        this(buildNumber, name, null);
+    }
+
+    /*package*/ Alias(final int buildNumber, final String name, final @CheckForNull BuildMetadata metadata) {
+
         if (name == null) throw new IllegalArgumentException("No name provided");
 
         this.buildNumber = buildNumber;
         this.name = name;
+        this.metadata = metadata;
     }
 
     @Override
@@ -60,6 +70,25 @@ import hudson.model.Run;
     public int getBuildNumber() {
         return buildNumber;
     }
+
+    /**
+     * Details of the build known without loading it.
+     *
+     * @return null for builds tagged before the metadata was recorded.
+     */
+    public @CheckForNull BuildMetadata getMetadata() {
+        return metadata;
+    }
+
+    /**
+     * @return Time since the build was scheduled, null if not known.
+     */
+    public @CheckForNull String getTimestampString() {
+
+        if (metadata == null || metadata.getTimestamp() == 0) return null;
+
+        return Util.getTimeSpanString(System.currentTimeMillis() - metadata.getTimestamp());
+    }
     
     @Override
     public String getDisplayName() {
@@ -0,0 +1,222 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2013 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.buildaliassetter;
+
+import hudson.model.Job;
+import hudson.model.Run;
+import hudson.util.FormValidation;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import jenkins.model.Jenkins;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONException;
+import net.sf.json.JSONObject;
+
+/**
+ * Alias changes of many builds applied at once
+ *
+ * Read from JSON document:
+ *
+ * <pre>
+ * {"operations": [
+ *   {"job": "folder/job", "build": 42, "add": ["release-1.0", "stable"]},
+ *   {"job": "folder/job", "build": 40, "remove": ["stable"]}
+ * ]}
+ * </pre>
+ *
+ * The whole batch is validated before anything is changed. Storage of each
+ * job is written once no matter how many builds of it the batch touches.
+ *
+ * @author ogondza
+ */
+/*package*/ final class AliasBatch {
+
+    private final List<Operation> operations;
+
+    private AliasBatch(final List<Operation> operations) {
+
+        this.operations = operations;
+    }
+
+    /**
+     * @throws IllegalArgumentException When the document is malformed.
+     */
+    /*package*/ static AliasBatch parse(final String json) {
+
+        final JSONObject document;
+        final JSONArray entries;
+        try {
+
+            document = JSONObject.fromObject(json);
+            entries = document.getJSONArray("operations");
+        } catch (final JSONException ex) {
+
+            throw new IllegalArgumentException("Malformed alias batch: " + ex.getMessage(), ex);
+        }
+
+        final List<Operation> operations = new ArrayList<Operation>(entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+
+            final JSONObject entry = entries.optJSONObject(i);
+            if (entry == null || !entry.has("job") || !entry.has("build")) throw new IllegalArgumentException(
+                    "Operation #" + i + " has to specify job and build"
+            );
+
+            final int build;
+            try {
+
+                build = entry.getInt("build");
+            } catch (final JSONException ex) {
+
+                throw new IllegalArgumentException("Operation #" + i + " has invalid build number", ex);
+            }
+
+            final Operation operation = new Operation(
+                    entry.getString("job"), build, names(entry, "add"), names(entry, "remove")
+            );
+
+            if (operation.add.isEmpty() && operation.remove.isEmpty()) throw new IllegalArgumentException(
+                    "Operation #" + i + " neither adds nor removes an alias"
+            );
+
+            for (final String alias: operation.add) {
+
+                final FormValidation validation = AliasProvider.validateAlias(alias);
+                if (validation != null) throw new IllegalArgumentException(
+                        "Operation #" + i + ": " + validation.getMessage()
+                );
+            }
+
+            operations.add(operation);
+        }
+
+        return new AliasBatch(operations);
+    }
+
+    private static LinkedHashSet<String> names(final JSONObject entry, final String key) {
+
+        final LinkedHashSet<String> names = new LinkedHashSet<String>();
+        final JSONArray array = entry.optJSONArray(key);
+        if (array == null) return names;
+
+        for (int i = 0; i < array.size(); i++) {
+
+            names.add(array.getString(i));
+        }
+
+        return names;
+    }
+
+    /**
+     * Resolve, authorize and apply all operations.
+     *
+     * @return Number of builds affected per job full name.
+     * @throws IllegalArgumentException When a job or build does not exist. Nothing is changed in such case.
+     * @throws org.springframework.security.access.AccessDeniedException When not permitted to update builds of some job.
+     */
+    /*package*/ Map<String, Integer> apply() throws IOException {
+
+        final Map<Job<?, ?>, List<Resolved>> perJob = new LinkedHashMap<Job<?, ?>, List<Resolved>>();
+        for (final Operation operation: operations) {
+
+            final Job<?, ?> job = Jenkins.get().getItemByFullName(operation.job, Job.class);
+            if (job == null) throw new IllegalArgumentException("No such job: " + operation.job);
+
+            // Do not load builds of jobs the user can not update
+            List<Resolved> resolved = perJob.get(job);
+            if (resolved == null) {
+
+                job.checkPermission(Run.UPDATE);
+                resolved = new ArrayList<Resolved>();
+                perJob.put(job, resolved);
+            }
+
+            final Run<?, ?> build = job.getBuildByNumber(operation.build);
+            if (build == null) throw new IllegalArgumentException(
+                    "No such build: " + operation.job + " #" + operation.build
+            );
+
+            resolved.add(new Resolved(build, operation));
+        }
+
+        final Map<String, Integer> summary = new LinkedHashMap<String, Integer>();
+        for (final Map.Entry<Job<?, ?>, List<Resolved>> entry: perJob.entrySet()) {
+
+            final PermalinkStorage storage = PermalinkStorage.forJob(entry.getKey());
+            for (final Resolved resolved: entry.getValue()) {
+
+                if (!resolved.operation.remove.isEmpty()) {
+
+                    storage.removeAliases(resolved.build, resolved.operation.remove);
+                }
+
+                if (!resolved.operation.add.isEmpty()) {
+
+                    storage.addAliases(resolved.build, resolved.operation.add);
+                }
+            }
+
+            storage.save();
+            summary.put(entry.getKey().getFullName(), entry.getValue().size());
+        }
+
+        return summary;
+    }
+
+    private static final class Operation {
+
+        private final String job;
+        private final int build;
+        private final LinkedHashSet<String> add;
+        private final LinkedHashSet<String> remove;
+
+        private Operation(
+                final String job, final int build, final LinkedHashSet<String> add, final LinkedHashSet<String> remove
+        ) {
+
+            this.job = job;
+            this.build = build;
+            this.add = add;
+            this.remove = remove;
+        }
+    }
+
+    private static final class Resolved {
+
+        private final Run<?, ?> build;
+        private final Operation operation;
+
+        private Resolved(final Run<?, ?> build, final Operation operation) {
+
+            this.build = build;
+            this.operation = operation;
+        }
+    }
+}
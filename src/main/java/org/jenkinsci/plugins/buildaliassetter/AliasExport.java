@@ -0,0 +1,200 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2013 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.buildaliassetter;
+
+import hudson.model.Job;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import jenkins.model.Jenkins;
+import net.sf.json.util.JSONUtils;
+
+/**
+ * Write aliases of all jobs row by row
+ *
+ * Rows are <tt>(job, alias, buildNumber, timestamp, result)</tt> written as soon as they are
+ * read from each job's {@link PermalinkStorage}, so nothing but the current
+ * job is held in memory and no build is loaded. Storages not loaded yet are
+ * read from disk and stay unloaded. Only jobs visible to the current user are
+ * exported.
+ *
+ * @author ogondza
+ */
+/*package*/ final class AliasExport {
+
+    /*package*/ enum Format {
+
+        JSON("application/json"), CSV("text/csv");
+
+        /*package*/ final String contentType;
+
+        Format(final String contentType) {
+
+            this.contentType = contentType;
+        }
+    }
+
+    private final Format format;
+    private final int offset;
+    private final int limit;
+    private final long since;
+
+    /**
+     * @param offset Number of rows to skip.
+     * @param limit Maximal number of rows to write, negative for no limit.
+     * @param since Lowest build timestamp to export, in milliseconds since epoch. Non-positive to export all.
+     */
+    /*package*/ AliasExport(final Format format, final int offset, final int limit, final long since) {
+
+        this.format = format;
+        this.offset = Math.max(0, offset);
+        this.limit = limit;
+        this.since = since;
+    }
+
+    /*package*/ void write(final Writer out) throws IOException {
+
+        final RowWriter rows = new RowWriter(out);
+        rows.begin();
+
+        for (final Job<?, ?> job: Jenkins.get().allItems(Job.class)) {
+
+            final PermalinkStorage storage = job.getProperty(PermalinkStorage.class);
+            if (storage == null) continue;
+
+            rows.job = job.getFullName();
+            if (!storage.visit(since, rows)) break;
+        }
+
+        rows.end();
+        out.flush();
+    }
+
+    private final class RowWriter implements PermalinkStorage.Visitor {
+
+        private final Writer out;
+        private String job;
+        private int skipped = 0;
+        private int written = 0;
+
+        private RowWriter(final Writer out) {
+
+            this.out = out;
+        }
+
+        private void begin() throws IOException {
+
+            if (format == Format.JSON) {
+
+                out.write("{\"aliases\":[");
+            } else {
+
+                out.write("job,alias,buildNumber,timestamp,result\n");
+            }
+        }
+
+        public boolean visit(final int buildNumber, final String alias, final BuildMetadata metadata) throws IOException {
+
+            if (skipped < offset) {
+
+                skipped++;
+                return true;
+            }
+
+            if (limit >= 0 && written >= limit) return false;
+
+            final String timestamp = metadata == null || metadata.getTimestamp() == 0
+                    ? null
+                    : Long.toString(metadata.getTimestamp())
+            ;
+            final String result = metadata == null ? null : metadata.getResult();
+
+            if (format == Format.JSON) {
+
+                if (written > 0) out.write(',');
+                out.write("{\"job\":");
+                out.write(JSONUtils.quote(job));
+                out.write(",\"alias\":");
+                out.write(JSONUtils.quote(alias));
+                out.write(",\"buildNumber\":");
+                out.write(Integer.toString(buildNumber));
+                if (timestamp != null) {
+
+                    out.write(",\"timestamp\":");
+                    out.write(timestamp);
+                }
+                if (result != null) {
+
+                    out.write(",\"result\":");
+                    out.write(JSONUtils.quote(result));
+                }
+                out.write('}');
+            } else {
+
+                writeCsv(job);
+                out.write(',');
+                writeCsv(alias);
+                out.write(',');
+                out.write(Integer.toString(buildNumber));
+                out.write(',');
+                if (timestamp != null) out.write(timestamp);
+                out.write(',');
+                if (result != null) out.write(result);
+                out.write('\n');
+            }
+
+            written++;
+            return true;
+        }
+
+        private void writeCsv(final String value) throws IOException {
+
+            boolean quote = false;
+            for (int i = 0; i < value.length() && !quote; i++) {
+
+                final char c = value.charAt(i);
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+
+            if (!quote) {
+
+                out.write(value);
+                return;
+            }
+
+            out.write('"');
+            out.write(value.replace("\"", "\"\""));
+            out.write('"');
+        }
+
+        private void end() throws IOException {
+
+            if (format == Format.JSON) {
+
+                out.write("]}");
+            }
+        }
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2013 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.buildaliassetter;
+
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.model.Item;
+import hudson.model.Job;
+import hudson.model.listeners.ItemListener;
+
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.MetricSet;
+import com.codahale.metrics.Timer;
+
+import jenkins.metrics.api.MetricProvider;
+import jenkins.metrics.api.Metrics;
+
+/**
+ * Publish {@link AliasMetrics} through the Metrics plugin when installed.
+ *
+ * Events are recorded into counters and timers as they happen. Providers and
+ * job storages get metrics of their own, named after the provider class and
+ * the job, registered once they are first seen. Job gauges follow renames
+ * and are removed with the job.
+ *
+ * @author ogondza
+ */
+@Extension(optional = true)
+public class AliasMetricProvider extends MetricProvider implements AliasMetrics.Listener {
+
+    private static final String PREFIX = "buildaliassetter.";
+
+    private static final String BUILDS = PREFIX + "storage.builds";
+    private static final String ALIASES = PREFIX + "storage.aliases";
+    private static final String BYTES = PREFIX + "storage.bytes";
+
+    private final Timer validation = new Timer();
+    private final Timer saves = new Timer();
+    private final Counter lookups = new Counter();
+    private final Counter misses = new Counter();
+
+    public AliasMetricProvider() {
+
+        AliasMetrics.setListener(this);
+
+        // Storages loaded before the provider was instantiated
+        for (final PermalinkStorage storage: AliasMetrics.get().loadedStorages()) {
+
+            loaded(storage);
+        }
+    }
+
+    @Override
+    public @Nonnull MetricSet getMetricSet() {
+
+        final Map<String, Metric> metrics = new HashMap<String, Metric>();
+        metrics.put(PREFIX + "validation", validation);
+        metrics.put(PREFIX + "save", saves);
+        metrics.put(PREFIX + "lookup.count", lookups);
+        metrics.put(PREFIX + "lookup.misses", misses);
+
+        return new MetricSet() {
+            public Map<String, Metric> getMetrics() {
+                return metrics;
+            }
+        };
+    }
+
+    public void providerEvaluated(final String provider, final long nanos) {
+
+        final MetricRegistry registry = Metrics.metricRegistry();
+        if (registry == null) return;
+
+        registry.timer(MetricRegistry.name(PREFIX + "providers", provider)).update(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void validated(final long nanos) {
+
+        validation.update(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void saved(final long nanos) {
+
+        saves.update(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void lookedUp(final boolean found) {
+
+        lookups.inc();
+        if (!found) misses.inc();
+    }
+
+    public void loaded(final PermalinkStorage storage) {
+
+        final MetricRegistry registry = Metrics.metricRegistry();
+        if (registry == null || storage.getJob() == null) return;
+
+        final String job = storage.getJob().getFullName();
+        // Do not keep storages of deleted or reloaded jobs
+        final WeakReference<PermalinkStorage> ref = new WeakReference<PermalinkStorage>(storage);
+
+        register(registry, MetricRegistry.name(BUILDS, job), new Gauge<Integer>() {
+            public Integer getValue() {
+                final PermalinkStorage s = ref.get();
+                return s == null ? 0 : s.aliasedBuilds();
+            }
+        });
+        register(registry, MetricRegistry.name(ALIASES, job), new Gauge<Integer>() {
+            public Integer getValue() {
+                final PermalinkStorage s = ref.get();
+                return s == null ? 0 : s.distinctAliases();
+            }
+        });
+        register(registry, MetricRegistry.name(BYTES, job), new Gauge<Long>() {
+            public Long getValue() {
+                final PermalinkStorage s = ref.get();
+                return s == null ? 0L : s.store().size();
+            }
+        });
+    }
+
+    /**
+     * Replace the gauge of storage loaded before the job was reloaded.
+     */
+    private static synchronized void register(final MetricRegistry registry, final String name, final Metric metric) {
+
+        registry.remove(name);
+        registry.register(name, metric);
+    }
+
+    /**
+     * Remove gauges of the job and of the jobs nested in it.
+     */
+    private static synchronized void unregister(final MetricRegistry registry, final String job) {
+
+        registry.removeMatching(new MetricFilter() {
+            public boolean matches(final String name, final Metric metric) {
+
+                for (final String gauge: new String[] { BUILDS, ALIASES, BYTES }) {
+
+                    final String jobGauge = MetricRegistry.name(gauge, job);
+                    if (name.equals(jobGauge) || name.startsWith(jobGauge + "/")) return true;
+                }
+
+                return false;
+            }
+        });
+    }
+
+    /**
+     * Keep job gauges named after the job.
+     */
+    @Extension(optional = true)
+    public static final class JobListener extends ItemListener {
+
+        @Override
+        public void onDeleted(final Item item) {
+
+            final MetricRegistry registry = Metrics.metricRegistry();
+            if (registry == null) return;
+
+            unregister(registry, item.getFullName());
+        }
+
+        @Override
+        public void onLocationChanged(final Item item, final String oldFullName, final String newFullName) {
+
+            final MetricRegistry registry = Metrics.metricRegistry();
+            if (registry == null) return;
+
+            unregister(registry, oldFullName);
+
+            if (!(item instanceof Job)) return;
+
+            // Nested jobs are notified one by one
+            final PermalinkStorage storage = ((Job<?, ?>) item).getProperty(PermalinkStorage.class);
+            if (storage == null || !AliasMetrics.get().loadedStorages().contains(storage)) return;
+
+            final AliasMetricProvider provider = ExtensionList.lookup(MetricProvider.class).get(AliasMetricProvider.class);
+            if (provider != null) provider.loaded(storage);
+        }
+    }
+}
@@ -0,0 +1,308 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2013 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.buildaliassetter;
+
+import hudson.init.Initializer;
+import hudson.init.InitMilestone;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.CheckForNull;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Timings and counters of alias evaluation, persistence and lookup
+ *
+ * Collected in memory for the whole instance and published through JMX
+ * and, when installed, the Metrics plugin.
+ *
+ * @author ogondza
+ */
+public final class AliasMetrics implements AliasMetricsMXBean {
+
+    private final static Logger LOGGER = Logger.getLogger(AliasMetrics.class.getName());
+
+    private static final AliasMetrics INSTANCE = new AliasMetrics();
+
+    private final ConcurrentHashMap<String, Timing> providers = new ConcurrentHashMap<String, Timing>();
+    private final Timing validation = new Timing();
+    private final Timing saves = new Timing();
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Storages that were loaded, weakly so unloaded jobs are not retained.
+     */
+    private final Set<PermalinkStorage> storages = Collections.synchronizedSet(
+            Collections.newSetFromMap(new WeakHashMap<PermalinkStorage, Boolean>())
+    );
+
+    /**
+     * Additional receiver of the events, null if none.
+     */
+    private static volatile @CheckForNull Listener listener;
+
+    private AliasMetrics() {}
+
+    /*package*/ static AliasMetrics get() {
+
+        return INSTANCE;
+    }
+
+    @Initializer(after = InitMilestone.PLUGINS_STARTED)
+    public static void register() {
+
+        try {
+
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName name = new ObjectName(AliasMetrics.class.getPackage().getName() + ":type=AliasMetrics");
+            if (!server.isRegistered(name)) {
+
+                server.registerMBean(INSTANCE, name);
+            }
+        } catch (final JMException ex) {
+
+            LOGGER.log(Level.WARNING, "Unable to register alias metrics", ex);
+        }
+    }
+
+    /*package*/ static void setListener(final @CheckForNull Listener listener) {
+
+        AliasMetrics.listener = listener;
+    }
+
+    /*package*/ static void providerEvaluated(final AliasProvider provider, final long nanos) {
+
+        final String name = provider.getClass().getName();
+        final Listener l = listener;
+        if (l != null) l.providerEvaluated(name, nanos);
+
+        Timing timing = INSTANCE.providers.get(name);
+        if (timing == null) {
+
+            final Timing created = new Timing();
+            timing = INSTANCE.providers.putIfAbsent(name, created);
+            if (timing == null) timing = created;
+        }
+
+        timing.record(nanos);
+    }
+
+    /*package*/ static void validated(final long nanos) {
+
+        INSTANCE.validation.record(nanos);
+        final Listener l = listener;
+        if (l != null) l.validated(nanos);
+    }
+
+    /*package*/ static void saved(final long nanos) {
+
+        INSTANCE.saves.record(nanos);
+        final Listener l = listener;
+        if (l != null) l.saved(nanos);
+    }
+
+    /*package*/ static void lookedUp(final boolean found) {
+
+        INSTANCE.lookups.increment();
+        if (!found) INSTANCE.misses.increment();
+        final Listener l = listener;
+        if (l != null) l.lookedUp(found);
+    }
+
+    /*package*/ static void loaded(final PermalinkStorage storage) {
+
+        INSTANCE.storages.add(storage);
+        final Listener l = listener;
+        if (l != null) l.loaded(storage);
+    }
+
+    public Map<String, Long> getProviderEvaluations() {
+
+        final Map<String, Long> result = new TreeMap<String, Long>();
+        for (final Map.Entry<String, Timing> entry: providers.entrySet()) {
+
+            result.put(entry.getKey(), entry.getValue().count.sum());
+        }
+
+        return result;
+    }
+
+    public Map<String, Long> getProviderTimeMillis() {
+
+        final Map<String, Long> result = new TreeMap<String, Long>();
+        for (final Map.Entry<String, Timing> entry: providers.entrySet()) {
+
+            result.put(entry.getKey(), TimeUnit.NANOSECONDS.toMillis(entry.getValue().nanos.sum()));
+        }
+
+        return result;
+    }
+
+    public Map<String, Long> getProviderMaxMillis() {
+
+        final Map<String, Long> result = new TreeMap<String, Long>();
+        for (final Map.Entry<String, Timing> entry: providers.entrySet()) {
+
+            result.put(entry.getKey(), TimeUnit.NANOSECONDS.toMillis(entry.getValue().max.get()));
+        }
+
+        return result;
+    }
+
+    public long getValidations() {
+        return validation.count.sum();
+    }
+
+    public long getValidationTimeMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(validation.nanos.sum());
+    }
+
+    public long getSaves() {
+        return saves.count.sum();
+    }
+
+    public long getSaveTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(saves.nanos.sum());
+    }
+
+    public long getSaveMaxMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(saves.max.get());
+    }
+
+    public long getLookups() {
+        return lookups.sum();
+    }
+
+    public long getLookupMisses() {
+        return misses.sum();
+    }
+
+    public Map<String, Long> getAliasedBuilds() {
+
+        final Map<String, Long> result = new TreeMap<String, Long>();
+        for (final PermalinkStorage storage: loadedStorages()) {
+
+            result.put(storage.getJob().getFullName(), (long) storage.aliasedBuilds());
+        }
+
+        return result;
+    }
+
+    public Map<String, Long> getDistinctAliases() {
+
+        final Map<String, Long> result = new TreeMap<String, Long>();
+        for (final PermalinkStorage storage: loadedStorages()) {
+
+            result.put(storage.getJob().getFullName(), (long) storage.distinctAliases());
+        }
+
+        return result;
+    }
+
+    public Map<String, Long> getStoredBytes() {
+
+        final Map<String, Long> result = new TreeMap<String, Long>();
+        for (final PermalinkStorage storage: loadedStorages()) {
+
+            result.put(storage.getJob().getFullName(), storage.store().size());
+        }
+
+        return result;
+    }
+
+    /*package*/ List<PermalinkStorage> loadedStorages() {
+
+        final List<PermalinkStorage> loaded;
+        synchronized (storages) {
+
+            loaded = new ArrayList<PermalinkStorage>(storages);
+        }
+
+        // Storages removed from jobs are not interesting anymore
+        final List<PermalinkStorage> attached = new ArrayList<PermalinkStorage>(loaded.size());
+        for (final PermalinkStorage storage: loaded) {
+
+            if (storage.getJob() != null && storage.getJob().getProperty(PermalinkStorage.class) == storage) {
+
+                attached.add(storage);
+            }
+        }
+
+        return attached;
+    }
+
+    /**
+     * Receive the events as they happen.
+     */
+    /*package*/ interface Listener {
+
+        void providerEvaluated(String provider, long nanos);
+
+        void validated(long nanos);
+
+        void saved(long nanos);
+
+        void lookedUp(boolean found);
+
+        void loaded(PermalinkStorage storage);
+    }
+
+    /**
+     * Number of events, their total and maximal duration.
+     */
+    private static final class Timing {
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        private void record(final long duration) {
+
+            count.increment();
+            nanos.add(duration);
+
+            long current = max.get();
+            while (duration > current && !max.compareAndSet(current, duration)) {
+
+                current = max.get();
+            }
+        }
+    }
+}
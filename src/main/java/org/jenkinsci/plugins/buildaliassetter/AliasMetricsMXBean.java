@@ -0,0 +1,64 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2013 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.buildaliassetter;
+
+import java.util.Map;
+
+/**
+ * Build alias metrics exposed over JMX as
+ * <tt>org.jenkinsci.plugins.buildaliassetter:type=AliasMetrics</tt>.
+ *
+ * Maps are keyed by provider class name or job full name. Storage gauges
+ * cover storages loaded since Jenkins started only.
+ *
+ * @author ogondza
+ */
+public interface AliasMetricsMXBean {
+
+    Map<String, Long> getProviderEvaluations();
+
+    Map<String, Long> getProviderTimeMillis();
+
+    Map<String, Long> getProviderMaxMillis();
+
+    long getValidations();
+
+    long getValidationTimeMicros();
+
+    long getSaves();
+
+    long getSaveTimeMillis();
+
+    long getSaveMaxMillis();
+
+    long getLookups();
+
+    long getLookupMisses();
+
+    Map<String, Long> getAliasedBuilds();
+
+    Map<String, Long> getDistinctAliases();
+
+    Map<String, Long> getStoredBytes();
+}
@@ -0,0 +1,193 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2013 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.buildaliassetter;
+
+import hudson.Extension;
+import hudson.init.Terminator;
+import hudson.model.Item;
+import hudson.model.Job;
+import hudson.model.Saveable;
+import hudson.model.listeners.ItemListener;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.CheckForNull;
+
+import jenkins.util.SystemProperties;
+import jenkins.util.Timer;
+
+/**
+ * Write-behind persistence of alias changes
+ *
+ * Modified objects are marked dirty and saved together once the delay
+ * elapses, so a burst of alias changes costs a single write per object.
+ * Pending saves are flushed when Jenkins terminates.
+ *
+ * Alias storages are tracked by the full name of their job and looked up
+ * again when saved. Storage replaced by reloading the job is not written,
+ * so it can not compact away the journal of its successor.
+ *
+ * @author ogondza
+ */
+public final class AliasPersister {
+
+    private final static Logger LOGGER = Logger.getLogger(AliasPersister.class.getName());
+
+    private static final long DELAY = SystemProperties.getLong(AliasPersister.class.getName() + ".delay", 5000L);
+
+    private static final Set<Saveable> DIRTY = Collections.newSetFromMap(new ConcurrentHashMap<Saveable, Boolean>());
+
+    /**
+     * Jobs with dirty alias storage per full name.
+     */
+    private static final ConcurrentMap<String, Job<?, ?>> DIRTY_STORAGES = new ConcurrentHashMap<String, Job<?, ?>>();
+
+    private static final AtomicBoolean SCHEDULED = new AtomicBoolean();
+
+    private AliasPersister() {}
+
+    /**
+     * Schedule the object to be saved.
+     */
+    /*package*/ static void save(final Saveable saveable) {
+
+        final Job<?, ?> job = storageOwner(saveable);
+        if (job != null) {
+
+            DIRTY_STORAGES.put(job.getFullName(), job);
+        } else {
+
+            DIRTY.add(saveable);
+        }
+
+        if (SCHEDULED.compareAndSet(false, true)) {
+
+            Timer.get().schedule(new Runnable() {
+                public void run() {
+
+                    SCHEDULED.set(false);
+                    flush();
+                }
+            }, DELAY, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Discard pending save of an object that is not supposed to be written anymore.
+     */
+    /*package*/ static void forget(final Saveable saveable) {
+
+        final Job<?, ?> job = storageOwner(saveable);
+        if (job != null) {
+
+            DIRTY_STORAGES.remove(job.getFullName());
+        }
+
+        DIRTY.remove(saveable);
+    }
+
+    /**
+     * @return Job of the alias storage, null for other objects or storage not attached to a job.
+     */
+    private static @CheckForNull Job<?, ?> storageOwner(final Saveable saveable) {
+
+        if (!(saveable instanceof PermalinkStorage)) return null;
+
+        final Job<?, ?> job = ((PermalinkStorage) saveable).getJob();
+        return job == null || job.getFullName() == null ? null : job;
+    }
+
+    /**
+     * Save all dirty objects.
+     */
+    @Terminator
+    public static void flush() {
+
+        for (final String name: DIRTY_STORAGES.keySet()) {
+
+            final Job<?, ?> job = DIRTY_STORAGES.remove(name);
+            if (job == null) continue;
+
+            final PermalinkStorage storage = PermalinkStorage.current(job);
+            if (storage != null) {
+
+                write(storage);
+            }
+        }
+
+        final Iterator<Saveable> it = DIRTY.iterator();
+        while (it.hasNext()) {
+
+            final Saveable saveable = it.next();
+            it.remove();
+
+            write(saveable);
+        }
+    }
+
+    private static void write(final Saveable saveable) {
+
+        try {
+
+            saveable.save();
+        } catch (final IOException ex) {
+
+            LOGGER.log(Level.SEVERE, "Unable to save build aliases for " + saveable, ex);
+        }
+    }
+
+    @Extension
+    public static class DeletedItemListener extends ItemListener {
+
+        /**
+         * Do not recreate configuration of deleted items.
+         */
+        @Override
+        public void onDeleted(final Item item) {
+
+            if (item instanceof Saveable) {
+
+                forget((Saveable) item);
+            }
+
+            if (item instanceof Job) {
+
+                final PermalinkStorage storage = ((Job<?, ?>) item).getProperty(PermalinkStorage.class);
+                if (storage != null) {
+
+                    forget(storage);
+                }
+            }
+        }
+    }
+}
@@ -32,7 +32,6 @@ import org.kohsuke.stapler.StaplerRequest;
 
 import hudson.ExtensionPoint;
 import hudson.model.AbstractBuild;
-import hudson.model.PermalinkProjectAction.Permalink;
 import hudson.model.AbstractDescribableImpl;
 import hudson.model.BuildListener;
 import hudson.util.FormValidation;
@@ -59,6 +58,20 @@ public abstract class AliasProvider extends AbstractDescribableImpl<AliasProvide
             final AbstractBuild<?, ?> build, final BuildListener listener
     ) throws IOException, InterruptedException;
 
+    /**
+     * Phases of the build this provider should be evaluated in.
+     *
+     * Providers that can produce all their names when the build starts should
+     * return {@link EvaluationPhase#START} to save the second evaluation
+     * and storage update when the build ends.
+     *
+     * @return {@link EvaluationPhase#BOTH} unless overridden.
+     */
+    public EvaluationPhase evaluationPhase() {
+
+        return EvaluationPhase.BOTH;
+    }
+
     /**
      * Validate custom alias
      *
@@ -68,36 +81,41 @@ public abstract class AliasProvider extends AbstractDescribableImpl<AliasProvide
      *
      * This implementation ensures that an alias can not possibly collide with
      * the build number (it must not be an integer) and buildin permalink
-     * ("lastBuild", "lastSuccessfulBuild", etc.).
+     * ("lastBuild", "lastSuccessfulBuild", etc.) or a permalink contributed by
+     * another plugin. If configured globally, the alias also has to match the
+     * alias pattern.
      *
      * @return null if valid, {@link FormValidation} describing the cause otherwise.
      */
     public static FormValidation validateAlias(final String aliasCandidate) {
 
-        if (aliasCandidate.isEmpty()) return FormValidation.error(
-                "Custom build alias is empty"
-        );
+        return AliasValidator.validate(aliasCandidate);
+    }
 
-        try {
+    /**
+     * Build phase in which the names are evaluated.
+     */
+    public enum EvaluationPhase {
 
-            Integer.parseInt(aliasCandidate);
+        /**
+         * Once the build has started. Names do not depend on the build outcome.
+         */
+        START,
 
-            return FormValidation.error(
-                    "Custom build alias '" + aliasCandidate + "' might collide with build number"
-            );
-        } catch (final NumberFormatException ex) {/* not an int */}
+        /**
+         * Once the build has finished.
+         */
+        END,
 
-        for (final Permalink buildin: Permalink.BUILTIN) {
+        /**
+         * At both points.
+         */
+        BOTH;
 
-            if (aliasCandidate.equalsIgnoreCase(buildin.getId())) {
+        /*package*/ boolean includes(final boolean start) {
 
-                return FormValidation.error(
-                        "Custom build alias '" + aliasCandidate + "' collide with buildin permalink"
-                );
-            }
+            return this == BOTH || (start ? this == START : this == END);
         }
-
-        return null;
     }
 
     public static abstract class Descriptor extends hudson.model.Descriptor<AliasProvider> {
@@ -0,0 +1,551 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2013 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.buildaliassetter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.annotation.CheckForNull;
+
+import org.apache.commons.io.input.CountingInputStream;
+import org.apache.commons.io.output.WriterOutputStream;
+
+import hudson.Util;
+import hudson.util.AtomicFileWriter;
+import jenkins.util.SystemProperties;
+
+/**
+ * Compact binary files holding aliases of a single job
+ *
+ * The state is kept in a snapshot file and an append-only journal of
+ * changes made since the snapshot was written. Reading replays the journal
+ * on top of the snapshot, and a record torn by a crash ends the replay.
+ * Replaying the same journal twice yields the same state, so a crash in the
+ * middle of {@link #compact} loses nothing.
+ *
+ * Alias names in the snapshot are written once into a name table and buckets
+ * refer to them by index, so recurring names cost four bytes per build.
+ * Since version 2, {@link BuildMetadata} is stored along with the bucket.
+ * Counts and name indexes are checked against the bytes left in the file
+ * and the name table, so corrupted content fails with {@link IOException}.
+ *
+ * @author ogondza
+ */
+/*package*/ final class AliasStore {
+
+    /*package*/ static final String FILE_NAME = "build-aliases.dat";
+    /*package*/ static final String JOURNAL_NAME = "build-aliases.log";
+
+    private static final int MAGIC = 0x42414c53;
+    private static final int VERSION = 2;
+
+    /**
+     * Journal size in bytes that triggers its compaction into the snapshot.
+     */
+    /*package*/ static final long COMPACTION_THRESHOLD = SystemProperties.getLong(
+            AliasStore.class.getName() + ".compactionThreshold", 1024L * 1024L
+    );
+
+    private static final byte ADD = 1;
+    private static final byte DELETE = 2;
+    private static final byte REMOVE = 3;
+    private static final byte METADATA = 4;
+
+    private final File file;
+    private final File journal;
+
+    /*package*/ AliasStore(final File dir) {
+
+        this.file = new File(dir, FILE_NAME);
+        this.journal = new File(dir, JOURNAL_NAME);
+    }
+
+    /*package*/ File getFile() {
+
+        return file;
+    }
+
+    /**
+     * @return Bytes occupied by the snapshot and the journal.
+     */
+    /*package*/ long size() {
+
+        return file.length() + journal.length();
+    }
+
+    /*package*/ long journalSize() {
+
+        return journal.length();
+    }
+
+    /**
+     * @return Aliases per build number. Empty if nothing was written so far.
+     */
+    /*package*/ Map<Integer, LinkedHashSet<String>> read() throws IOException {
+
+        return read(new HashMap<Integer, BuildMetadata>());
+    }
+
+    /**
+     * @param metadata Populated with metadata of builds that has aliases.
+     * @return Aliases per build number. Empty if nothing was written so far.
+     */
+    /*package*/ Map<Integer, LinkedHashSet<String>> read(final Map<Integer, BuildMetadata> metadata) throws IOException {
+
+        final Map<Integer, LinkedHashSet<String>> permalinks = new TreeMap<Integer, LinkedHashSet<String>>();
+
+        readSnapshot(permalinks, metadata);
+        replayJournal(permalinks, metadata);
+
+        metadata.keySet().retainAll(permalinks.keySet());
+
+        return permalinks;
+    }
+
+    private void readSnapshot(
+            final Map<Integer, LinkedHashSet<String>> permalinks, final Map<Integer, BuildMetadata> metadata
+    ) throws IOException {
+
+        final Input in;
+        try {
+
+            in = new Input(file);
+        } catch (final FileNotFoundException ex) {
+
+            return;
+        }
+
+        try {
+
+            if (in.readInt() != MAGIC) throw new IOException("Not an alias store: " + file);
+
+            final int version = in.readInt();
+            if (version != 1 && version != VERSION) throw new IOException("Unsupported alias store version " + version + ": " + file);
+
+            final String[] names = new String[in.readCount(2)];
+            for (int i = 0; i < names.length; i++) {
+
+                names[i] = in.readUTF();
+            }
+
+            final int buckets = in.readCount(version >= 2 ? 9 : 8);
+            for (int i = 0; i < buckets; i++) {
+
+                final int buildNumber = in.readInt();
+                final int size = in.readCount(4);
+                final LinkedHashSet<String> bucket = new LinkedHashSet<String>(size);
+                for (int j = 0; j < size; j++) {
+
+                    bucket.add(names[in.readIndex(names.length)]);
+                }
+
+                permalinks.put(buildNumber, bucket);
+
+                if (version >= 2 && in.readBoolean()) {
+
+                    metadata.put(buildNumber, readMetadata(in));
+                }
+            }
+        } finally {
+
+            in.close();
+        }
+    }
+
+    private void replayJournal(
+            final Map<Integer, LinkedHashSet<String>> permalinks, final Map<Integer, BuildMetadata> metadata
+    ) throws IOException {
+
+        final Input in;
+        try {
+
+            in = new Input(journal);
+        } catch (final FileNotFoundException ex) {
+
+            return;
+        }
+
+        try {
+
+            for (;;) {
+
+                final Record record;
+                try {
+
+                    record = Record.read(in);
+                } catch (final EOFException ex) {
+
+                    return; // Record torn by a crash, its count can claim more bytes than were written
+                }
+
+                if (record == null) return;
+
+                record.applyTo(permalinks, metadata);
+            }
+        } finally {
+
+            in.close();
+        }
+    }
+
+    /**
+     * Append records to the journal and sync them to disk.
+     */
+    /*package*/ void append(final List<Record> records) throws IOException {
+
+        if (records.isEmpty()) return;
+
+        final FileOutputStream fos = new FileOutputStream(journal, true);
+        try {
+
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos));
+            for (final Record record: records) {
+
+                record.write(out);
+            }
+
+            out.flush();
+            fos.getChannel().force(false);
+        } finally {
+
+            fos.close();
+        }
+    }
+
+    /**
+     * Replace the snapshot atomically and truncate the journal.
+     *
+     * @param permalinks Aliases per build number. Must not change while being written.
+     */
+    /*package*/ void compact(final Map<Integer, ? extends Iterable<String>> permalinks) throws IOException {
+
+        compact(permalinks, Collections.<Integer, BuildMetadata>emptyMap());
+    }
+
+    /**
+     * Replace the snapshot atomically and truncate the journal.
+     *
+     * @param permalinks Aliases per build number. Must not change while being written.
+     * @param metadata Metadata per build number. Missing for builds without metadata.
+     */
+    /*package*/ void compact(
+            final Map<Integer, ? extends Iterable<String>> permalinks, final Map<Integer, BuildMetadata> metadata
+    ) throws IOException {
+
+        writeSnapshot(permalinks, metadata);
+        Files.deleteIfExists(journal.toPath());
+    }
+
+    private void writeSnapshot(
+            final Map<Integer, ? extends Iterable<String>> permalinks, final Map<Integer, BuildMetadata> metadata
+    ) throws IOException {
+
+        final Map<String, Integer> ids = new HashMap<String, Integer>();
+        final List<String> names = new ArrayList<String>();
+        for (final Iterable<String> bucket: permalinks.values()) {
+
+            for (final String name: bucket) {
+
+                if (!ids.containsKey(name)) {
+
+                    ids.put(name, names.size());
+                    names.add(name);
+                }
+            }
+        }
+
+        final AtomicFileWriter writer = new AtomicFileWriter(file.toPath(), StandardCharsets.ISO_8859_1);
+        try {
+
+            // Latin-1 maps every byte to a single character and back, so the content passes through unchanged
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new WriterOutputStream(writer, StandardCharsets.ISO_8859_1)
+            ));
+
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+
+            out.writeInt(names.size());
+            for (final String name: names) {
+
+                out.writeUTF(name);
+            }
+
+            out.writeInt(permalinks.size());
+            for (final Map.Entry<Integer, ? extends Iterable<String>> entry: permalinks.entrySet()) {
+
+                final List<Integer> bucket = new ArrayList<Integer>();
+                for (final String name: entry.getValue()) {
+
+                    bucket.add(ids.get(name));
+                }
+
+                out.writeInt(entry.getKey());
+                out.writeInt(bucket.size());
+                for (final int id: bucket) {
+
+                    out.writeInt(id);
+                }
+
+                final BuildMetadata buildMetadata = metadata.get(entry.getKey());
+                out.writeBoolean(buildMetadata != null);
+                if (buildMetadata != null) {
+
+                    writeMetadata(out, buildMetadata);
+                }
+            }
+
+            out.flush();
+            writer.commit();
+        } finally {
+
+            writer.abort();
+        }
+    }
+
+    private static void writeMetadata(final DataOutputStream out, final BuildMetadata metadata) throws IOException {
+
+        out.writeLong(metadata.getTimestamp());
+        out.writeUTF(Util.fixNull(metadata.getResult()));
+        out.writeUTF(Util.fixNull(metadata.getDisplayName()));
+    }
+
+    private static BuildMetadata readMetadata(final DataInputStream in) throws IOException {
+
+        final long timestamp = in.readLong();
+        final String result = Util.fixEmpty(in.readUTF());
+        final String displayName = Util.fixEmpty(in.readUTF());
+
+        return new BuildMetadata(timestamp, result, displayName);
+    }
+
+    /*package*/ void delete() throws IOException {
+
+        Files.deleteIfExists(file.toPath());
+        Files.deleteIfExists(journal.toPath());
+    }
+
+    /**
+     * Single change recorded in the journal.
+     */
+    /*package*/ static final class Record {
+
+        private final byte operation;
+        private final int buildNumber;
+        private final Collection<String> aliases;
+        private final @CheckForNull BuildMetadata metadata;
+
+        private Record(final byte operation, final int buildNumber, final Collection<String> aliases) {
+
+            this(operation, buildNumber, aliases, null);
+        }
+
+        private Record(
+                final byte operation, final int buildNumber, final Collection<String> aliases,
+                final @CheckForNull BuildMetadata metadata
+        ) {
+
+            this.operation = operation;
+            this.buildNumber = buildNumber;
+            this.aliases = aliases;
+            this.metadata = metadata;
+        }
+
+        /*package*/ static Record add(final int buildNumber, final Collection<String> aliases) {
+
+            return new Record(ADD, buildNumber, aliases);
+        }
+
+        /*package*/ static Record remove(final int buildNumber, final Collection<String> aliases) {
+
+            return new Record(REMOVE, buildNumber, aliases);
+        }
+
+        /*package*/ static Record delete(final int buildNumber) {
+
+            return new Record(DELETE, buildNumber, Collections.<String>emptyList());
+        }
+
+        /**
+         * @param metadata Copied so later updates are recorded separately.
+         */
+        /*package*/ static Record metadata(final int buildNumber, final BuildMetadata metadata) {
+
+            return new Record(METADATA, buildNumber, Collections.<String>emptyList(), new BuildMetadata(
+                    metadata.getTimestamp(), metadata.getResult(), metadata.getDisplayName()
+            ));
+        }
+
+        private void write(final DataOutputStream out) throws IOException {
+
+            out.writeByte(operation);
+            out.writeInt(buildNumber);
+            out.writeInt(aliases.size());
+            for (final String alias: aliases) {
+
+                out.writeUTF(alias);
+            }
+
+            if (operation == METADATA) {
+
+                writeMetadata(out, metadata);
+            }
+        }
+
+        /**
+         * @return null if there is no more records.
+         */
+        private static Record read(final Input in) throws IOException {
+
+            final int operation = in.read();
+            if (operation == -1) return null;
+
+            if (operation != ADD && operation != DELETE && operation != REMOVE && operation != METADATA) {
+
+                throw new IOException("Unknown journal record " + operation);
+            }
+
+            final int buildNumber = in.readInt();
+            final int size = in.readCount(2);
+            final List<String> aliases = new ArrayList<String>(size);
+            for (int i = 0; i < size; i++) {
+
+                aliases.add(in.readUTF());
+            }
+
+            if (operation == METADATA) return new Record(METADATA, buildNumber, aliases, readMetadata(in));
+
+            return new Record((byte) operation, buildNumber, aliases);
+        }
+
+        private void applyTo(final Map<Integer, LinkedHashSet<String>> permalinks, final Map<Integer, BuildMetadata> metadata) {
+
+            if (operation == METADATA) {
+
+                metadata.put(buildNumber, this.metadata);
+                return;
+            }
+
+            if (operation == DELETE) {
+
+                permalinks.remove(buildNumber);
+                metadata.remove(buildNumber);
+                return;
+            }
+
+            if (operation == REMOVE) {
+
+                final LinkedHashSet<String> bucket = permalinks.get(buildNumber);
+                if (bucket != null) {
+
+                    bucket.removeAll(aliases);
+                    if (bucket.isEmpty()) {
+
+                        permalinks.remove(buildNumber);
+                        metadata.remove(buildNumber);
+                    }
+                }
+                return;
+            }
+
+            LinkedHashSet<String> bucket = permalinks.get(buildNumber);
+            if (bucket == null) {
+
+                bucket = new LinkedHashSet<String>(aliases.size());
+                permalinks.put(buildNumber, bucket);
+            }
+
+            bucket.addAll(aliases);
+        }
+    }
+
+    /**
+     * Stream that knows how many bytes of the file are left.
+     */
+    private static final class Input extends DataInputStream {
+
+        private final File source;
+        private final long length;
+        private final CountingInputStream counter;
+
+        private Input(final File source) throws FileNotFoundException {
+
+            this(source, new CountingInputStream(new BufferedInputStream(new FileInputStream(source))));
+        }
+
+        private Input(final File source, final CountingInputStream counter) {
+
+            super(counter);
+            this.source = source;
+            this.length = source.length();
+            this.counter = counter;
+        }
+
+        /**
+         * Read number of elements that occupy at least given number of bytes each.
+         *
+         * @throws EOFException if there is not enough bytes left in the file.
+         */
+        private int readCount(final int elementSize) throws IOException {
+
+            final int count = readInt();
+            if (count < 0) throw new IOException("Negative count " + count + " in " + source);
+
+            final long remaining = length - counter.getByteCount();
+            if ((long) count * elementSize > remaining) throw new EOFException(
+                    "Count " + count + " exceeds " + remaining + " remaining bytes of " + source
+            );
+
+            return count;
+        }
+
+        private int readIndex(final int size) throws IOException {
+
+            final int index = readInt();
+            if (index < 0 || index >= size) throw new IOException(
+                    "Index " + index + " out of " + size + " names in " + source
+            );
+
+            return index;
+        }
+    }
+}
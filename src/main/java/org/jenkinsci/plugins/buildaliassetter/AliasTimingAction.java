@@ -0,0 +1,168 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2013 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.buildaliassetter;
+
+import hudson.model.InvisibleAction;
+import hudson.model.Run;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+/**
+ * Time spent setting aliases of a build
+ *
+ * Recorded for every phase aliases were set in, so slow providers can be
+ * found through the remote API of builds.
+ *
+ * @author ogondza
+ */
+@ExportedBean
+public class AliasTimingAction extends InvisibleAction {
+
+    private final List<Phase> phases = new CopyOnWriteArrayList<Phase>();
+
+    /**
+     * Get the action of the build, attaching a new one if there is none.
+     */
+    /*package*/ static AliasTimingAction of(final Run<?, ?> build) {
+
+        synchronized (build) {
+
+            AliasTimingAction action = build.getAction(AliasTimingAction.class);
+            if (action == null) {
+
+                action = new AliasTimingAction();
+                build.addAction(action);
+            }
+
+            return action;
+        }
+    }
+
+    @Exported(inline = true)
+    public List<Phase> getPhases() {
+        return Collections.unmodifiableList(phases);
+    }
+
+    /*package*/ void add(final Phase phase) {
+
+        phases.add(phase);
+    }
+
+    @ExportedBean(defaultVisibility = 2)
+    public static final class Phase {
+
+        private final String name;
+        private final List<Provider> providers = new ArrayList<Provider>();
+        private volatile long validationMicros;
+        private volatile long storageMicros;
+
+        /*package*/ Phase(final String name) {
+
+            this.name = name;
+        }
+
+        /**
+         * <tt>setUp</tt>, <tt>tearDown</tt>, <tt>startBuild</tt>, <tt>endBuild</tt> or <tt>step</tt>.
+         */
+        @Exported
+        public String getName() {
+            return name;
+        }
+
+        @Exported(inline = true)
+        public List<Provider> getProviders() {
+            return Collections.unmodifiableList(providers);
+        }
+
+        @Exported
+        public long getValidationMicros() {
+            return validationMicros;
+        }
+
+        /**
+         * Time to update the storage in memory and enqueue its journal records.
+         *
+         * Writing to disk happens in the background for many builds at once
+         * so it is not attributed to any of them.
+         */
+        @Exported
+        public long getStorageMicros() {
+            return storageMicros;
+        }
+
+        /*package*/ void provider(final AliasProvider provider, final long nanos, final List<String> aliases) {
+
+            providers.add(new Provider(provider.getClass().getName(), nanos < 0 ? -1 : nanos / 1000, aliases));
+        }
+
+        /*package*/ void validation(final long nanos) {
+
+            validationMicros = nanos / 1000;
+        }
+
+        /*package*/ void storage(final long nanos) {
+
+            storageMicros = nanos / 1000;
+        }
+    }
+
+    @ExportedBean(defaultVisibility = 2)
+    public static final class Provider {
+
+        private final String type;
+        private final long durationMicros;
+        private final List<String> aliases;
+
+        private Provider(final String type, final long durationMicros, final List<String> aliases) {
+
+            this.type = type;
+            this.durationMicros = durationMicros;
+            this.aliases = new ArrayList<String>(aliases);
+        }
+
+        @Exported
+        public String getType() {
+            return type;
+        }
+
+        /**
+         * @return Time spent in {@link AliasProvider#names}, negative if it timed out.
+         */
+        @Exported
+        public long getDurationMicros() {
+            return durationMicros;
+        }
+
+        @Exported
+        public List<String> getAliases() {
+            return Collections.unmodifiableList(aliases);
+        }
+    }
+}
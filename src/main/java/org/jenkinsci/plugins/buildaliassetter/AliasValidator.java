@@ -0,0 +1,199 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2013 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.buildaliassetter;
+
+import hudson.model.PermalinkProjectAction.Permalink;
+import hudson.util.FormValidation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import javax.annotation.CheckForNull;
+
+/**
+ * Validate alias candidates without allocating for valid names
+ *
+ * Numeric names are detected by scanning characters the way
+ * {@link Integer#parseInt(String)} does. Ids of registered permalinks,
+ * including those contributed by other plugins, and the url of
+ * {@link PermalinkStorage} are kept in a table sorted by case-folded hash
+ * that is rebuilt once the permalink list grows.
+ *
+ * @author ogondza
+ */
+/*package*/ final class AliasValidator {
+
+    private static volatile @CheckForNull Pattern policy;
+
+    private static volatile Reserved reserved = new Reserved(new ArrayList<Permalink>());
+
+    private AliasValidator() {}
+
+    /**
+     * Pattern all aliases has to match. Null to accept all names.
+     */
+    /*package*/ static void setPolicy(final @CheckForNull Pattern pattern) {
+
+        policy = pattern;
+    }
+
+    /**
+     * @return null if valid, {@link FormValidation} describing the cause otherwise.
+     */
+    /*package*/ static @CheckForNull FormValidation validate(final String aliasCandidate) {
+
+        if (aliasCandidate.isEmpty()) return FormValidation.error(
+                "Custom build alias is empty"
+        );
+
+        if (isInteger(aliasCandidate)) return FormValidation.error(
+                "Custom build alias '" + aliasCandidate + "' might collide with build number"
+        );
+
+        if (reserved().contains(aliasCandidate)) return FormValidation.error(
+                "Custom build alias '" + aliasCandidate + "' collide with buildin permalink"
+        );
+
+        final Pattern pattern = policy;
+        if (pattern != null && !pattern.matcher(aliasCandidate).matches()) return FormValidation.error(
+                "Custom build alias '" + aliasCandidate + "' does not match '" + pattern.pattern() + "'"
+        );
+
+        return null;
+    }
+
+    /**
+     * @return true if {@link Integer#parseInt(String)} would accept the string.
+     */
+    /*package*/ static boolean isInteger(final String candidate) {
+
+        final int length = candidate.length();
+        if (length == 0) return false;
+
+        int i = 0;
+        boolean negative = false;
+        final char first = candidate.charAt(0);
+        if (first == '-' || first == '+') {
+
+            if (length == 1) return false;
+
+            negative = first == '-';
+            i = 1;
+        }
+
+        final long limit = negative ? -(long) Integer.MIN_VALUE : Integer.MAX_VALUE;
+        long value = 0;
+        for (; i < length; i++) {
+
+            final int digit = Character.digit(candidate.charAt(i), 10);
+            if (digit < 0) return false;
+
+            value = value * 10 + digit;
+            if (value > limit) return false; // Would overflow
+        }
+
+        return true;
+    }
+
+    private static Reserved reserved() {
+
+        Reserved current = reserved;
+        if (current.permalinks != Permalink.BUILTIN.size()) {
+
+            current = new Reserved(new ArrayList<Permalink>(Permalink.BUILTIN));
+            reserved = current;
+        }
+
+        return current;
+    }
+
+    /**
+     * Hash consistent with {@link String#equalsIgnoreCase(String)}.
+     */
+    private static int foldedHash(final String string) {
+
+        int hash = 0;
+        for (int i = 0; i < string.length(); i++) {
+
+            hash = 31 * hash + Character.toLowerCase(Character.toUpperCase(string.charAt(i)));
+        }
+
+        return hash;
+    }
+
+    private static final class Reserved {
+
+        private final int permalinks;
+        private final int size;
+        private final int[] hashes;
+        private final String[] ids;
+
+        private Reserved(final List<Permalink> permalinks) {
+
+            this.permalinks = permalinks.size();
+            this.size = this.permalinks + 1;
+
+            final String[] ids = new String[size];
+            for (int i = 0; i < this.permalinks; i++) {
+
+                ids[i] = permalinks.get(i).getId();
+            }
+            ids[this.permalinks] = PermalinkStorage.URL_NAME;
+
+            Arrays.sort(ids, new Comparator<String>() {
+                public int compare(final String o1, final String o2) {
+
+                    return Integer.compare(foldedHash(o1), foldedHash(o2));
+                }
+            });
+
+            this.ids = ids;
+            this.hashes = new int[size];
+            for (int i = 0; i < size; i++) {
+
+                hashes[i] = foldedHash(ids[i]);
+            }
+        }
+
+        private boolean contains(final String candidate) {
+
+            final int hash = foldedHash(candidate);
+            int i = Arrays.binarySearch(hashes, hash);
+            if (i < 0) return false;
+
+            // Rewind to the first id of the same hash
+            while (i > 0 && hashes[i - 1] == hash) i--;
+
+            for (; i < size && hashes[i] == hash; i++) {
+
+                if (candidate.equalsIgnoreCase(ids[i])) return true;
+            }
+
+            return false;
+        }
+    }
+}
@@ -25,33 +25,68 @@ package org.jenkinsci.plugins.buildaliassetter;
 
 import hudson.Extension;
 import hudson.Launcher;
+import hudson.Util;
+import hudson.init.Terminator;
 import hudson.matrix.MatrixAggregatable;
 import hudson.matrix.MatrixAggregator;
 import hudson.matrix.MatrixBuild;
+import hudson.matrix.MatrixRun;
 import hudson.model.BuildListener;
 import hudson.model.Item;
 import hudson.model.AbstractBuild;
 import hudson.model.AbstractProject;
 import hudson.model.Hudson;
 import hudson.model.Job;
+import hudson.model.Run;
+import hudson.model.TaskListener;
 import hudson.model.listeners.ItemListener;
 import hudson.model.listeners.RunListener;
 import hudson.tasks.BuildWrapper;
 import hudson.tasks.BuildWrapperDescriptor;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+import hudson.util.DaemonThreadFactory;
 import hudson.util.DescribableList;
 import hudson.util.FormValidation;
+import hudson.util.NamingThreadFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.BiFunction;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
+import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 
+import jenkins.model.Jenkins;
+import jenkins.util.ContextResettingExecutorService;
+import jenkins.util.SystemProperties;
+import jenkins.util.Timer;
 import net.sf.json.JSONObject;
 
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.StaplerRequest;
+import org.springframework.security.core.Authentication;
 
 /**
  * Set aliases to the build
@@ -60,7 +95,8 @@ import org.kohsuke.stapler.StaplerRequest;
  * desirable to set aliases as soon as possible to reach the build before it's
  * competition. On the other hand some data necessary to get the aliases might
  * not be available before the build has finished. No alias will be set twice
- * for the same build.
+ * for the same build. Providers declaring they can not produce different
+ * names at the end of the build are evaluated only once.
  *
  * @author ogondza
  */
@@ -68,8 +104,49 @@ public class BuildAliasSetter extends BuildWrapper implements MatrixAggregatable
 
     private final static Logger LOGGER = Logger.getLogger(BuildAliasSetter.class.getName());
 
+    /**
+     * Number of threads evaluating {@link AliasProvider}s of all builds.
+     */
+    private static final int PROVIDER_THREADS = SystemProperties.getInteger(
+            BuildAliasSetter.class.getName() + ".providerThreads", 4
+    );
+
+    /**
+     * Time in milliseconds to wait for aliases of a provider evaluated concurrently, counted since it started.
+     */
+    private static final long PROVIDER_TIMEOUT = SystemProperties.getLong(
+            BuildAliasSetter.class.getName() + ".providerTimeout", TimeUnit.MINUTES.toMillis(5)
+    );
+
+    private static final ExecutorService PROVIDER_EXECUTOR = new ContextResettingExecutorService(
+            Executors.newFixedThreadPool(PROVIDER_THREADS, new NamingThreadFactory(
+                    new DaemonThreadFactory(), "BuildAliasSetter provider"
+            ))
+    );
+
     private /*final*/ @Nonnull DescribableList<AliasProvider, AliasProvider.Descriptor> providers;
 
+    /**
+     * Number of latest aliased builds to keep aliases for. Null for no limit.
+     */
+    private @CheckForNull Integer maxAliasedBuilds;
+
+    /**
+     * Number of builds before the latest one to keep each alias for. Null for no limit.
+     */
+    private @CheckForNull Integer aliasHistoryDepth;
+
+    /**
+     * Apply aliases computed for a matrix build to its configuration runs
+     * instead of evaluating providers for every configuration.
+     */
+    private boolean propagateToConfigurations;
+
+    /**
+     * Evaluate providers in parallel outside of the build executor.
+     */
+    private boolean evaluateProvidersConcurrently;
+
     public BuildAliasSetter(@Nonnull DescribableList<AliasProvider, AliasProvider.Descriptor> providers) {
         this.providers = providers;
     }
@@ -78,13 +155,52 @@ public class BuildAliasSetter extends BuildWrapper implements MatrixAggregatable
         return providers;
     }
 
+    public @CheckForNull Integer getMaxAliasedBuilds() {
+        return maxAliasedBuilds;
+    }
+
+    @DataBoundSetter
+    public void setMaxAliasedBuilds(@CheckForNull Integer maxAliasedBuilds) {
+        this.maxAliasedBuilds = maxAliasedBuilds != null && maxAliasedBuilds > 0 ? maxAliasedBuilds : null;
+    }
+
+    public @CheckForNull Integer getAliasHistoryDepth() {
+        return aliasHistoryDepth;
+    }
+
+    @DataBoundSetter
+    public void setAliasHistoryDepth(@CheckForNull Integer aliasHistoryDepth) {
+        this.aliasHistoryDepth = aliasHistoryDepth != null && aliasHistoryDepth >= 0 ? aliasHistoryDepth : null;
+    }
+
+    public boolean isPropagateToConfigurations() {
+        return propagateToConfigurations;
+    }
+
+    @DataBoundSetter
+    public void setPropagateToConfigurations(boolean propagateToConfigurations) {
+        this.propagateToConfigurations = propagateToConfigurations;
+    }
+
+    public boolean isEvaluateProvidersConcurrently() {
+        return evaluateProvidersConcurrently;
+    }
+
+    @DataBoundSetter
+    public void setEvaluateProvidersConcurrently(boolean evaluateProvidersConcurrently) {
+        this.evaluateProvidersConcurrently = evaluateProvidersConcurrently;
+    }
+
     @Override
     @SuppressWarnings("rawtypes")
     public Environment setUp(
             final AbstractBuild build, final Launcher launcher, final BuildListener listener
     ) throws IOException, InterruptedException {
 
-        setAliases(build, listener);
+        // Aliases are applied by the aggregator of the matrix build
+        if (propagateToConfigurations && build instanceof MatrixRun) return new Environment() {};
+
+        setAliases(build, listener, true, "setUp");
 
         return new Environment() {
 
@@ -93,7 +209,7 @@ public class BuildAliasSetter extends BuildWrapper implements MatrixAggregatable
                     final AbstractBuild build, final BuildListener listener
             ) throws IOException, InterruptedException {
 
-                setAliases(build, listener);
+                setAliases(build, listener, false, "tearDown");
                 return super.tearDown(build, listener);
             }
         };
@@ -105,77 +221,285 @@ public class BuildAliasSetter extends BuildWrapper implements MatrixAggregatable
 
         return new MatrixAggregator(build, launcher, listener) {
 
+            private final LinkedHashSet<String> aliases = new LinkedHashSet<String>();
+
             @Override
             public boolean startBuild() throws InterruptedException, IOException {
 
-                setAliases(build, listener);
+                aliases.addAll(setAliases(build, listener, true, "startBuild"));
                 return super.startBuild();
             }
 
             @Override
             public boolean endBuild() throws InterruptedException, IOException {
 
-                setAliases(build, listener);
+                aliases.addAll(setAliases(build, listener, false, "endBuild"));
+
+                if (propagateToConfigurations) {
+
+                    propagate(build, listener, aliases);
+                }
+
                 return super.endBuild();
             }
         };
     }
 
-    private void setAliases(
-            final AbstractBuild<?, ?> build, final BuildListener listener
+    /**
+     * Apply aliases of matrix build to all its configuration runs.
+     *
+     * Each configuration storage is updated once with the aliases from both
+     * phases and scheduled to be saved once.
+     */
+    private void propagate(
+            final MatrixBuild build, final BuildListener listener, final LinkedHashSet<String> aliases
+    ) throws IOException {
+
+        if (aliases.isEmpty()) return;
+
+        final AliasTimingAction.Phase phase = new AliasTimingAction.Phase("propagate");
+        final long start = System.nanoTime();
+
+        final List<MatrixRun> runs = build.getExactRuns();
+        for (final MatrixRun run: runs) {
+
+            final PermalinkStorage storage = PermalinkStorage.forJob(run.getParent());
+            store(storage, run, aliases);
+            AliasPersister.save(storage);
+        }
+
+        phase.storage(System.nanoTime() - start);
+        AliasTimingAction.of(build).add(phase);
+
+        printToConsole(listener, "build aliases propagated to " + runs.size() + " configurations");
+    }
+
+    /**
+     * @return Aliases set.
+     */
+    private LinkedHashSet<String> setAliases(
+            final AbstractBuild<?, ?> build, final BuildListener listener, final boolean start, final String phaseName
     ) throws IOException, InterruptedException {
 
-        final LinkedHashSet<String> aliases = aliases(build, listener);
+        final List<AliasProvider> applicable = new ArrayList<AliasProvider>(providers.size());
+        for (final AliasProvider provider: providers) {
+
+            if (provider.evaluationPhase().includes(start)) {
+
+                applicable.add(provider);
+            }
+        }
+
+        // Nothing to re-evaluate in this phase
+        if (applicable.isEmpty() && providers.size() > 0) return new LinkedHashSet<String>();
+
+        final AliasTimingAction.Phase phase = new AliasTimingAction.Phase(phaseName);
+        final LinkedHashSet<String> aliases = aliases(build, listener, applicable, phase);
+        AliasTimingAction.of(build).add(phase);
 
         if (aliases.isEmpty()) {
 
             printToConsole(listener, "no build aliases set");
-            return;
+            return aliases;
         } else {
 
             printToConsole(listener, "setting build aliases " + aliases.toString());
         }
 
-        final AbstractProject<?, ?> project = build.getProject();
+        final long storageStart = System.nanoTime();
+
+        final PermalinkStorage storage = PermalinkStorage.forJob(build.getProject());
+        store(storage, build, aliases);
 
-        getStorage(project).addAliases(build, aliases);
+        phase.storage(System.nanoTime() - storageStart);
 
-        project.save();
+        AliasPersister.save(storage);
+
+        return aliases;
+    }
+
+    private void store(final PermalinkStorage storage, final Run<?, ?> build, final LinkedHashSet<String> aliases) {
+
+        storage.addAliases(build, aliases);
+
+        if (aliasHistoryDepth != null) {
+
+            storage.retainAliasHistory(aliases, aliasHistoryDepth);
+        }
+
+        if (maxAliasedBuilds != null) {
+
+            storage.retainLatestBuilds(maxAliasedBuilds);
+        }
     }
 
     private LinkedHashSet<String> aliases(
-            final AbstractBuild<?, ?> build, final BuildListener listener
+            final AbstractBuild<?, ?> build, final BuildListener listener, final List<AliasProvider> providers,
+            final AliasTimingAction.Phase phase
     ) throws IOException, InterruptedException {
 
+        final long[] durations = new long[providers.size()];
+        final List<List<String>> evaluated;
+        if (!evaluateProvidersConcurrently || providers.size() <= 1) {
+
+            evaluated = new ArrayList<List<String>>(providers.size());
+            for (int i = 0; i < providers.size(); i++) {
+
+                evaluated.add(evaluate(providers.get(i), build, listener, durations, i));
+            }
+        } else {
+
+            evaluated = evaluateConcurrently(build, listener, providers, durations);
+        }
+
         final LinkedHashSet<String> aliases = new LinkedHashSet<String>(providers.size());
-        for(final AliasProvider provider: providers) {
+        for (int i = 0; i < providers.size(); i++) {
 
-            final List<String> names = provider.names(build, listener);
+            final List<String> names = evaluated.get(i);
+            phase.provider(providers.get(i), durations[i], names);
             aliases.addAll(names);
         }
 
-        return filterAliases(aliases, listener);
+        return filterAliases(aliases, listener, phase);
     }
 
-    private PermalinkStorage getStorage(final AbstractProject<?, ?> project) throws IOException {
+    /**
+     * @param durations Time spent by the provider is stored at given index.
+     */
+    private static List<String> evaluate(
+            final AliasProvider provider, final AbstractBuild<?, ?> build, final BuildListener listener,
+            final long[] durations, final int index
+    ) throws IOException, InterruptedException {
+
+        final long start = System.nanoTime();
+        try {
+
+            return provider.names(build, listener);
+        } finally {
+
+            final long duration = System.nanoTime() - start;
+            durations[index] = duration;
+            AliasMetrics.providerEvaluated(provider, duration);
+        }
+    }
+
+    /**
+     * Evaluate all providers in parallel.
+     *
+     * Providers the pool has not started yet are evaluated by the calling
+     * thread, so a saturated pool can not starve the build. Note the pool
+     * threads are not build executors so providers can not see the node
+     * environment there.
+     *
+     * @return Names per provider in the order providers are configured.
+     */
+    private List<List<String>> evaluateConcurrently(
+            final AbstractBuild<?, ?> build, final BuildListener listener, final List<AliasProvider> configured,
+            final long[] durations
+    ) throws IOException, InterruptedException {
+
+        final Authentication auth = Jenkins.getAuthentication2();
+        final int size = configured.size();
+        final AtomicBoolean[] claimed = new AtomicBoolean[size];
+        final AtomicLongArray started = new AtomicLongArray(size);
+        final List<Future<List<String>>> futures = new ArrayList<Future<List<String>>>(size);
+        for (int i = 0; i < size; i++) {
+
+            claimed[i] = new AtomicBoolean();
+            durations[i] = -1;
 
-        PermalinkStorage storage = project.getProperty(PermalinkStorage.class);
-        if (storage == null) {
+            // The first one is always evaluated by the calling thread
+            if (i == 0) {
 
-            storage = new PermalinkStorage();
-            project.addProperty(storage);
+                futures.add(null);
+                continue;
+            }
+
+            final AliasProvider provider = configured.get(i);
+            final int index = i;
+            futures.add(PROVIDER_EXECUTOR.submit(new Callable<List<String>>() {
+                public List<String> call() throws Exception {
+
+                    started.set(index, System.nanoTime());
+                    // Evaluated by the calling thread in the meantime
+                    if (!claimed[index].compareAndSet(false, true)) return null;
+
+                    try (ACLContext ctx = ACL.as2(auth)) {
+
+                        return evaluate(provider, build, listener, durations, index);
+                    }
+                }
+            }));
         }
 
-        return storage;
+        final List<List<String>> names = new ArrayList<List<String>>(size);
+        try {
+
+            for (int i = 0; i < size; i++) {
+
+                if (claimed[i].compareAndSet(false, true)) {
+
+                    names.add(evaluate(configured.get(i), build, listener, durations, i));
+                } else {
+
+                    names.add(await(futures.get(i), started.get(i), configured.get(i), listener));
+                }
+            }
+        } finally {
+
+            for (final Future<List<String>> future: futures) {
+
+                if (future != null) {
+
+                    future.cancel(true);
+                }
+            }
+        }
+
+        return names;
+    }
+
+    /**
+     * Wait for provider evaluated by the pool.
+     *
+     * @param started Time the evaluation has started at.
+     */
+    private List<String> await(
+            final Future<List<String>> future, final long started, final AliasProvider provider, final BuildListener listener
+    ) throws IOException, InterruptedException {
+
+        final long remaining = PROVIDER_TIMEOUT - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        try {
+
+            return future.get(Math.max(0, remaining), TimeUnit.MILLISECONDS);
+        } catch (final TimeoutException ex) {
+
+            printToConsole(listener, String.format(
+                    "%s timed out after %d ms, skipping its aliases",
+                    provider.getClass().getSimpleName(), PROVIDER_TIMEOUT
+            ));
+            return Collections.<String>emptyList();
+        } catch (final ExecutionException ex) {
+
+            final Throwable cause = ex.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof InterruptedException) throw (InterruptedException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IOException(cause);
+        }
     }
 
     private LinkedHashSet<String> filterAliases(
-            final LinkedHashSet<String> aliasCandidates, final BuildListener listener
+            final LinkedHashSet<String> aliasCandidates, final BuildListener listener,
+            final AliasTimingAction.Phase phase
     ) {
 
         // make sure there is no null
         aliasCandidates.remove(null);
 
+        final long start = System.nanoTime();
+
         final LinkedHashSet<String> aliases = new LinkedHashSet<String>(aliasCandidates.size());
         for (final String aliasCandidate: aliasCandidates) {
 
@@ -189,6 +513,10 @@ public class BuildAliasSetter extends BuildWrapper implements MatrixAggregatable
             aliases.add(aliasCandidate);
         }
 
+        final long duration = System.nanoTime() - start;
+        AliasMetrics.validated(duration);
+        phase.validation(duration);
+
         return aliases;
     }
 
@@ -222,8 +550,76 @@ public class BuildAliasSetter extends BuildWrapper implements MatrixAggregatable
 
         @Deprecated // JENKINS-23264
         private DescribableList<AliasProvider, AliasProvider.Descriptor> builders;
+
+        /**
+         * Regular expression all aliases has to match. Null for no restriction.
+         */
+        private @CheckForNull String aliasPattern;
+
         public DescriptorImpl() {
             load(); // JENKINS-23264
+            AliasValidator.setPolicy(compilePattern(aliasPattern));
+        }
+
+        public @CheckForNull String getAliasPattern() {
+
+            return aliasPattern;
+        }
+
+        public void setAliasPattern(final @CheckForNull String aliasPattern) {
+
+            final String pattern = Util.fixEmptyAndTrim(aliasPattern);
+            AliasValidator.setPolicy(compilePattern(pattern));
+            this.aliasPattern = pattern;
+        }
+
+        private static @CheckForNull Pattern compilePattern(final @CheckForNull String pattern) {
+
+            if (pattern == null) return null;
+
+            try {
+
+                return Pattern.compile(pattern);
+            } catch (final PatternSyntaxException ex) {
+
+                LOGGER.log(Level.WARNING, "Ignoring invalid alias pattern " + pattern, ex);
+                return null;
+            }
+        }
+
+        @Override
+        public boolean configure(final StaplerRequest req, final JSONObject json) throws FormException {
+
+            final String pattern = Util.fixEmptyAndTrim(json.optString("aliasPattern"));
+            if (pattern != null) {
+
+                try {
+
+                    Pattern.compile(pattern);
+                } catch (final PatternSyntaxException ex) {
+
+                    throw new FormException("Invalid alias pattern: " + ex.getDescription(), ex, "aliasPattern");
+                }
+            }
+
+            setAliasPattern(pattern);
+            save();
+            return true;
+        }
+
+        public FormValidation doCheckAliasPattern(@QueryParameter final String value) {
+
+            final String pattern = Util.fixEmptyAndTrim(value);
+            if (pattern == null) return FormValidation.ok();
+
+            try {
+
+                Pattern.compile(pattern);
+                return FormValidation.ok();
+            } catch (final PatternSyntaxException ex) {
+
+                return FormValidation.error("Invalid regular expression: " + ex.getDescription());
+            }
         }
 
         @Override
@@ -240,7 +636,41 @@ public class BuildAliasSetter extends BuildWrapper implements MatrixAggregatable
                 throw new FormException("rebuildHetero failed", ex, "none");
             }
 
-            return new BuildAliasSetter(providers);
+            final BuildAliasSetter setter = new BuildAliasSetter(providers);
+            setter.setMaxAliasedBuilds(optionalInt(formData, "maxAliasedBuilds"));
+            setter.setAliasHistoryDepth(optionalInt(formData, "aliasHistoryDepth"));
+            setter.setPropagateToConfigurations(formData.optBoolean("propagateToConfigurations"));
+            setter.setEvaluateProvidersConcurrently(formData.optBoolean("evaluateProvidersConcurrently"));
+
+            return setter;
+        }
+
+        private Integer optionalInt(final JSONObject formData, final String name) throws FormException {
+
+            final String value = Util.fixEmptyAndTrim(formData.optString(name));
+            if (value == null) return null;
+
+            try {
+
+                return Integer.valueOf(value);
+            } catch (final NumberFormatException ex) {
+
+                throw new FormException("Not a number: " + value, ex, name);
+            }
+        }
+
+        public FormValidation doCheckMaxAliasedBuilds(@QueryParameter final String value) {
+
+            if (Util.fixEmptyAndTrim(value) == null) return FormValidation.ok();
+
+            return FormValidation.validatePositiveInteger(value);
+        }
+
+        public FormValidation doCheckAliasHistoryDepth(@QueryParameter final String value) {
+
+            if (Util.fixEmptyAndTrim(value) == null) return FormValidation.ok();
+
+            return FormValidation.validateNonNegativeInteger(value);
         }
 
         @Override
@@ -266,28 +696,107 @@ public class BuildAliasSetter extends BuildWrapper implements MatrixAggregatable
         }
     }
 
+    /**
+     * Delete aliases of deleted builds
+     *
+     * Build rotation deletes many builds of a job in a row so the deletions
+     * are collected for a short while and applied to each storage at once.
+     */
     @Extension
-    public static class DanglingAliasDeleter extends RunListener<AbstractBuild<?, ?>> {
+    public static class DanglingAliasDeleter extends RunListener<Run<?, ?>> {
+
+        private static final long DELAY = SystemProperties.getLong(DanglingAliasDeleter.class.getName() + ".delay", 1000L);
+
+        /**
+         * Deleted builds per full name of the job, so they are applied to the storage attached when flushed.
+         */
+        private static final ConcurrentMap<String, Deletions> PENDING = new ConcurrentHashMap<String, Deletions>();
+
+        private static final AtomicBoolean SCHEDULED = new AtomicBoolean();
 
         /**
          * Delete aliases for builds that are being deleted.
          */
         @Override
-        public void onDeleted(final AbstractBuild<?, ?> build) {
+        public void onDeleted(final Run<?, ?> build) {
 
-            final AbstractProject<?, ?> project = build.getProject();
-            final PermalinkStorage storage = project.getProperty(PermalinkStorage.class);
+            final Job<?, ?> job = build.getParent();
+            if (job.getProperty(PermalinkStorage.class) == null) return;
 
-            if (storage == null) return;
+            final int buildNumber = build.getNumber();
+            // Pending set is modified only while mapped so none gets lost by flush
+            PENDING.compute(job.getFullName(), new BiFunction<String, Deletions, Deletions>() {
+                public Deletions apply(final String key, final Deletions pending) {
 
-            storage.deleteAliases(build);
-            try {
+                    final Deletions deletions = pending == null ? new Deletions() : pending;
+                    deletions.job = job;
+                    deletions.buildNumbers.add(buildNumber);
+                    return deletions;
+                }
+            });
 
-                project.save();
-            } catch (final IOException ex) {
+            if (SCHEDULED.compareAndSet(false, true)) {
+
+                Timer.get().schedule(new Runnable() {
+                    public void run() {
+
+                        SCHEDULED.set(false);
+                        flush();
+                    }
+                }, DELAY, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        /**
+         * Delete aliases of all builds deleted so far.
+         */
+        /*package*/ static void flush() {
+
+            for (final String name: PENDING.keySet()) {
+
+                final Deletions deletions = PENDING.remove(name);
+                if (deletions == null) continue;
+
+                final PermalinkStorage storage = PermalinkStorage.current(deletions.job);
+                if (storage == null) continue;
+
+                storage.deleteBuilds(deletions.buildNumbers);
+                AliasPersister.save(storage);
+            }
+        }
+
+        /**
+         * Apply pending deletions before aliases are saved for the last time.
+         */
+        @Terminator
+        public static void terminate() {
+
+            flush();
+            AliasPersister.flush();
+        }
+
+        private static final class Deletions {
+
+            private Job<?, ?> job;
+            private final Set<Integer> buildNumbers = new HashSet<Integer>();
+        }
+    }
+
+    @Extension
+    public static class AliasMetadataUpdater extends RunListener<Run<?, ?>> {
+
+        /**
+         * Record final result of aliased builds.
+         */
+        @Override
+        public void onCompleted(final Run<?, ?> build, final TaskListener listener) {
+
+            final PermalinkStorage storage = build.getParent().getProperty(PermalinkStorage.class);
+            if (storage == null) return;
+
+            if (storage.updateMetadata(build)) {
 
-                final String msg = "Unable to save project after deleting dangling aliases for job " + build.getDisplayName();
-                LOGGER.log(Level.SEVERE, msg, ex);
+                AliasPersister.save(storage);
             }
         }
     }
@@ -308,6 +817,9 @@ public class BuildAliasSetter extends BuildWrapper implements MatrixAggregatable
 
             try {
                 job.removeProperty(storage);
+                AliasPersister.forget(storage);
+                GlobalAliasIndex.forget(job.getFullName());
+                storage.store().delete();
             } catch (IOException ex) {
                 LOGGER.log(Level.SEVERE, "Unable to erase aliases when coppying " + item.getFullName(), ex);
             }
@@ -0,0 +1,222 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2013 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.buildaliassetter;
+
+import hudson.AbortException;
+import hudson.Extension;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.util.FormValidation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.CheckForNull;
+
+import org.jenkinsci.plugins.workflow.steps.Step;
+import org.jenkinsci.plugins.workflow.steps.StepContext;
+import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
+import org.jenkinsci.plugins.workflow.steps.StepExecution;
+import org.jenkinsci.plugins.workflow.steps.SynchronousNonBlockingStepExecution;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
+
+/**
+ * Attach aliases to the running build from Pipeline
+ *
+ * <pre>
+ * buildAlias 'release-1.0'
+ * buildAlias names: ['stable', "v${version}"], maxAliasedBuilds: 50
+ * </pre>
+ *
+ * Aliases are recorded in the {@link PermalinkStorage} of the job, the same
+ * way {@link BuildAliasSetter} does for other job types.
+ *
+ * @author ogondza
+ */
+public class BuildAliasStep extends Step {
+
+    private final @CheckForNull String name;
+
+    private @CheckForNull List<String> names;
+
+    private @CheckForNull Integer maxAliasedBuilds;
+
+    private @CheckForNull Integer aliasHistoryDepth;
+
+    @DataBoundConstructor
+    public BuildAliasStep(final @CheckForNull String name) {
+
+        this.name = name;
+    }
+
+    public @CheckForNull String getName() {
+        return name;
+    }
+
+    public @CheckForNull List<String> getNames() {
+        return names;
+    }
+
+    @DataBoundSetter
+    public void setNames(final @CheckForNull List<String> names) {
+        this.names = names == null || names.isEmpty() ? null : new ArrayList<String>(names);
+    }
+
+    public @CheckForNull Integer getMaxAliasedBuilds() {
+        return maxAliasedBuilds;
+    }
+
+    @DataBoundSetter
+    public void setMaxAliasedBuilds(final @CheckForNull Integer maxAliasedBuilds) {
+        this.maxAliasedBuilds = maxAliasedBuilds != null && maxAliasedBuilds > 0 ? maxAliasedBuilds : null;
+    }
+
+    public @CheckForNull Integer getAliasHistoryDepth() {
+        return aliasHistoryDepth;
+    }
+
+    @DataBoundSetter
+    public void setAliasHistoryDepth(final @CheckForNull Integer aliasHistoryDepth) {
+        this.aliasHistoryDepth = aliasHistoryDepth != null && aliasHistoryDepth >= 0 ? aliasHistoryDepth : null;
+    }
+
+    /**
+     * @return All aliases requested in order, without duplicates.
+     */
+    /*package*/ LinkedHashSet<String> aliases() {
+
+        final LinkedHashSet<String> aliases = new LinkedHashSet<String>();
+        if (name != null) {
+
+            aliases.add(name);
+        }
+
+        if (names != null) {
+
+            aliases.addAll(names);
+        }
+
+        aliases.remove(null);
+        return aliases;
+    }
+
+    @Override
+    public StepExecution start(final StepContext context) throws Exception {
+
+        return new Execution(this, context);
+    }
+
+    private static final class Execution extends SynchronousNonBlockingStepExecution<Void> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient BuildAliasStep step;
+
+        private Execution(final BuildAliasStep step, final StepContext context) {
+
+            super(context);
+            this.step = step;
+        }
+
+        @Override
+        protected Void run() throws Exception {
+
+            final LinkedHashSet<String> aliases = step.aliases();
+            if (aliases.isEmpty()) throw new AbortException("No build alias given");
+
+            for (final String alias: aliases) {
+
+                final FormValidation validation = AliasProvider.validateAlias(alias);
+                if (validation != null) throw new AbortException(validation.getMessage());
+            }
+
+            final Run<?, ?> build = getContext().get(Run.class);
+            getContext().get(TaskListener.class).getLogger().println(
+                    "BuildAliasSetter: setting build aliases " + aliases
+            );
+
+            final long start = System.nanoTime();
+
+            final PermalinkStorage storage = PermalinkStorage.forJob(build.getParent());
+            storage.addAliases(build, aliases);
+
+            if (step.aliasHistoryDepth != null) {
+
+                storage.retainAliasHistory(aliases, step.aliasHistoryDepth);
+            }
+
+            if (step.maxAliasedBuilds != null) {
+
+                storage.retainLatestBuilds(step.maxAliasedBuilds);
+            }
+
+            final AliasTimingAction.Phase phase = new AliasTimingAction.Phase("step");
+            phase.storage(System.nanoTime() - start);
+            AliasTimingAction.of(build).add(phase);
+
+            AliasPersister.save(storage);
+
+            return null;
+        }
+    }
+
+    @Extension
+    public static class DescriptorImpl extends StepDescriptor {
+
+        @Override
+        public Set<? extends Class<?>> getRequiredContext() {
+
+            final Set<Class<?>> context = new HashSet<Class<?>>();
+            context.add(Run.class);
+            context.add(TaskListener.class);
+            return Collections.unmodifiableSet(context);
+        }
+
+        @Override
+        public String getFunctionName() {
+
+            return "buildAlias";
+        }
+
+        @Override
+        public String getDisplayName() {
+
+            return "Set build alias";
+        }
+
+        public FormValidation doCheckName(@QueryParameter final String value) {
+
+            if (value == null || value.isEmpty()) return FormValidation.ok();
+
+            final FormValidation validation = AliasProvider.validateAlias(value);
+            return validation == null ? FormValidation.ok() : validation;
+        }
+    }
+}
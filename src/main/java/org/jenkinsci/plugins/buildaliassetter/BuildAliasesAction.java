@@ -0,0 +1,182 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2013 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.buildaliassetter;
+
+import hudson.Extension;
+import hudson.Util;
+import hudson.model.Job;
+import hudson.model.PermalinkProjectAction.Permalink;
+import hudson.model.RootAction;
+import hudson.model.Run;
+import hudson.util.HttpResponses;
+
+import java.io.IOException;
+import java.util.Map;
+
+import jenkins.model.Jenkins;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+import org.apache.commons.io.IOUtils;
+import org.kohsuke.stapler.HttpResponse;
+import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+import org.kohsuke.stapler.interceptor.RequirePOST;
+
+/**
+ * Instance-wide alias API exposed at <tt>/buildAliases/</tt>
+ *
+ * @author ogondza
+ */
+@Extension
+public class BuildAliasesAction implements RootAction {
+
+    public String getIconFileName() {
+        return null;
+    }
+
+    public String getDisplayName() {
+        return "Build aliases";
+    }
+
+    public String getUrlName() {
+        return "buildAliases";
+    }
+
+    /**
+     * Apply {@link AliasBatch} posted as request body.
+     */
+    @RequirePOST
+    public HttpResponse doBatch(final StaplerRequest req) throws IOException {
+
+        final AliasBatch batch;
+        final Map<String, Integer> summary;
+        try {
+
+            batch = AliasBatch.parse(IOUtils.toString(req.getReader()));
+            summary = batch.apply();
+        } catch (final IllegalArgumentException ex) {
+
+            return HttpResponses.errorWithoutStack(400, ex.getMessage());
+        }
+
+        final JSONObject data = new JSONObject();
+        data.put("builds", JSONObject.fromObject(summary));
+        return HttpResponses.okJSON(data);
+    }
+
+    /**
+     * Stream aliases of all jobs as JSON (default) or CSV.
+     *
+     * Query parameters <tt>offset</tt> and <tt>limit</tt> page through the
+     * rows and <tt>since</tt> skips builds started before given time in milliseconds since epoch.
+     */
+    public void doExport(
+            final StaplerRequest req, final StaplerResponse rsp,
+            @QueryParameter final String format,
+            @QueryParameter final int offset,
+            @QueryParameter final String limit,
+            @QueryParameter final long since
+    ) throws IOException {
+
+        final AliasExport.Format f = "csv".equalsIgnoreCase(format)
+                ? AliasExport.Format.CSV
+                : AliasExport.Format.JSON
+        ;
+
+        final int max;
+        try {
+
+            max = limit == null || limit.isEmpty() ? -1 : Integer.parseInt(limit);
+        } catch (final NumberFormatException ex) {
+
+            rsp.sendError(StaplerResponse.SC_BAD_REQUEST, "Invalid limit: " + limit);
+            return;
+        }
+
+        rsp.setContentType(f.contentType + ";charset=UTF-8");
+        new AliasExport(f, offset, max, since).write(rsp.getWriter());
+    }
+
+    /**
+     * Redirect <tt>/buildAliases/resolve/&lt;job-full-name>/&lt;alias></tt> to the aliased build.
+     *
+     * Unlike <tt>/job/&lt;job-name>/alias/&lt;alias></tt>, the alias is looked
+     * up in the storage index without scanning the permalinks of the job.
+     */
+    public HttpResponse doResolve(final StaplerRequest req) {
+
+        String path = req.getRestOfPath();
+        if (path.endsWith("/")) {
+
+            path = path.substring(0, path.length() - 1);
+        }
+
+        final int slash = path.lastIndexOf('/');
+        if (slash <= 0) return HttpResponses.notFound();
+
+        final String jobName = Util.rawDecode(path.substring(1, slash));
+        final String alias = Util.rawDecode(path.substring(slash + 1));
+
+        final Job<?, ?> job = Jenkins.get().getItemByFullName(jobName, Job.class);
+        if (job == null) return HttpResponses.notFound();
+
+        final PermalinkStorage storage = job.getProperty(PermalinkStorage.class);
+        if (storage == null) return HttpResponses.notFound();
+
+        final Permalink permalink = storage.resolve(alias);
+        final Run<?, ?> build = permalink == null ? null : permalink.resolve(job);
+        if (build == null) return HttpResponses.notFound();
+
+        return HttpResponses.redirectViaContextPath(build.getUrl());
+    }
+
+    /**
+     * Find all builds carrying an alias.
+     */
+    public HttpResponse doSearch(@QueryParameter final String q) {
+
+        final JSONArray builds = new JSONArray();
+        if (q != null) {
+
+            for (final GlobalAliasIndex.Location location: GlobalAliasIndex.find(q)) {
+
+                final Job<?, ?> job = Jenkins.get().getItemByFullName(location.job, Job.class);
+                if (job == null) continue;
+
+                final JSONObject build = new JSONObject();
+                build.put("job", location.job);
+                build.put("buildNumber", location.buildNumber);
+                build.put("url", job.getUrl() + location.buildNumber + "/");
+                builds.add(build);
+            }
+        }
+
+        final JSONObject data = new JSONObject();
+        data.put("alias", q);
+        data.put("builds", builds);
+        return HttpResponses.okJSON(data);
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2013 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.buildaliassetter;
+
+import hudson.Util;
+import hudson.model.Result;
+import hudson.model.Run;
+
+import javax.annotation.CheckForNull;
+
+/**
+ * Details of an aliased build captured when it was tagged
+ *
+ * Kept by {@link PermalinkStorage} so aliases can be listed without loading
+ * the builds. The instance is shared by all aliases of the build and updated
+ * once the build completes.
+ *
+ * @author ogondza
+ */
+public final class BuildMetadata {
+
+    private volatile long timestamp;
+    private volatile @CheckForNull String result;
+    private volatile @CheckForNull String displayName;
+
+    /*package*/ BuildMetadata(final long timestamp, final @CheckForNull String result, final @CheckForNull String displayName) {
+
+        this.timestamp = timestamp;
+        this.result = result;
+        this.displayName = displayName;
+    }
+
+    /*package*/ static BuildMetadata of(final Run<?, ?> build) {
+
+        final BuildMetadata metadata = new BuildMetadata(0, null, null);
+        metadata.update(build);
+        return metadata;
+    }
+
+    /**
+     * @return true if anything has changed.
+     */
+    /*package*/ synchronized boolean update(final Run<?, ?> build) {
+
+        final Result buildResult = build.getResult();
+        final String newResult = buildResult == null ? null : buildResult.toString();
+        final long newTimestamp = build.getTimeInMillis();
+        final String newDisplayName = build.getDisplayName();
+
+        if (newTimestamp == timestamp && Util.fixNull(newResult).equals(Util.fixNull(result))
+                && Util.fixNull(newDisplayName).equals(Util.fixNull(displayName))
+        ) return false;
+
+        timestamp = newTimestamp;
+        result = newResult;
+        displayName = newDisplayName;
+        return true;
+    }
+
+    /**
+     * @return Milliseconds since epoch the build was scheduled at.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return Result name or null if the build had no result yet when last updated.
+     */
+    public @CheckForNull String getResult() {
+        return result;
+    }
+
+    public @CheckForNull String getDisplayName() {
+        return displayName;
+    }
+}
@@ -0,0 +1,408 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2013 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.buildaliassetter;
+
+import hudson.Extension;
+import hudson.model.Item;
+import hudson.model.Job;
+import hudson.model.listeners.ItemListener;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+
+import java.io.IOException;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.BiFunction;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.CheckForNull;
+
+import jenkins.model.Jenkins;
+
+/**
+ * Alias name to all builds carrying it across all jobs
+ *
+ * The index is built on first lookup by walking storages of all jobs and
+ * kept up to date by {@link PermalinkStorage} modifications and item
+ * listener events afterwards. Until then modifications cost nothing.
+ *
+ * Storages that are not loaded are read from disk without loading them, and
+ * no lock is held while walking them. Modifications made in the meantime are
+ * recorded and replayed on top of the walked content before the index is
+ * published. Each of them sets presence of a particular location, so replaying
+ * one the walk has already seen changes nothing.
+ *
+ * @author ogondza
+ */
+/*package*/ final class GlobalAliasIndex {
+
+    private final static Logger LOGGER = Logger.getLogger(GlobalAliasIndex.class.getName());
+
+    private static final ReadWriteLock LOCK = new ReentrantReadWriteLock();
+
+    private static volatile @CheckForNull ConcurrentHashMap<String, Set<Location>> index;
+
+    /**
+     * Modifications made while the index is being built. Guarded by {@link #LOCK}.
+     */
+    private static @CheckForNull Queue<Change> pending;
+
+    /**
+     * Incremented when items are reloaded. Guarded by {@link #LOCK}.
+     */
+    private static int generation;
+
+    /**
+     * Only one thread builds the index at a time.
+     */
+    private static final Object BUILD = new Object();
+
+    private GlobalAliasIndex() {}
+
+    /**
+     * @return All builds with given alias, regardless of permissions.
+     */
+    /*package*/ static List<Location> find(final String alias) {
+
+        final Set<Location> locations = index().get(alias);
+        if (locations == null) return Collections.emptyList();
+
+        final List<Location> sorted = new ArrayList<Location>(locations);
+        Collections.sort(sorted);
+        return sorted;
+    }
+
+    private static ConcurrentHashMap<String, Set<Location>> index() {
+
+        final ConcurrentHashMap<String, Set<Location>> current = index;
+        if (current != null) return current;
+
+        synchronized (BUILD) {
+
+            for (;;) {
+
+                final int started;
+                LOCK.writeLock().lock();
+                try {
+
+                    if (index != null) return index;
+
+                    pending = new ConcurrentLinkedQueue<Change>();
+                    started = generation;
+                } finally {
+
+                    LOCK.writeLock().unlock();
+                }
+
+                final ConcurrentHashMap<String, Set<Location>> built = build();
+
+                LOCK.writeLock().lock();
+                try {
+
+                    // Items reloaded in the meantime
+                    if (generation != started) continue;
+
+                    for (final Change change: pending) {
+
+                        change.applyTo(built);
+                    }
+
+                    pending = null;
+                    index = built;
+                    return built;
+                } finally {
+
+                    LOCK.writeLock().unlock();
+                }
+            }
+        }
+    }
+
+    private static ConcurrentHashMap<String, Set<Location>> build() {
+
+        final ConcurrentHashMap<String, Set<Location>> built = new ConcurrentHashMap<String, Set<Location>>();
+        try (ACLContext ctx = ACL.as2(ACL.SYSTEM2)) {
+
+            for (final Job<?, ?> job: Jenkins.get().allItems(Job.class)) {
+
+                final PermalinkStorage storage = job.getProperty(PermalinkStorage.class);
+                if (storage == null) continue;
+
+                final String name = job.getFullName();
+                try {
+
+                    storage.visit(0, new PermalinkStorage.Visitor() {
+                        public boolean visit(final int buildNumber, final String alias, final BuildMetadata metadata) {
+
+                            add(built, alias, new Location(name, buildNumber));
+                            return true;
+                        }
+                    });
+                } catch (final IOException ex) {
+
+                    LOGGER.log(Level.WARNING, "Unable to index aliases of " + name, ex);
+                }
+            }
+        }
+
+        return built;
+    }
+
+    /**
+     * Apply the change to the index, or record it if the index is being built.
+     */
+    private static void apply(final Change change) {
+
+        LOCK.readLock().lock();
+        try {
+
+            final ConcurrentHashMap<String, Set<Location>> current = index;
+            if (current != null) {
+
+                change.applyTo(current);
+                return;
+            }
+
+            final Queue<Change> building = pending;
+            if (building != null) {
+
+                building.add(change);
+            }
+        } finally {
+
+            LOCK.readLock().unlock();
+        }
+    }
+
+    private static void add(
+            final ConcurrentHashMap<String, Set<Location>> index, final String alias, final Location location
+    ) {
+
+        index.compute(alias, new BiFunction<String, Set<Location>, Set<Location>>() {
+            public Set<Location> apply(final String key, final Set<Location> locations) {
+
+                final Set<Location> updated = locations == null
+                        ? Collections.newSetFromMap(new ConcurrentHashMap<Location, Boolean>())
+                        : locations
+                ;
+
+                updated.add(location);
+                return updated;
+            }
+        });
+    }
+
+    private static void remove(
+            final ConcurrentHashMap<String, Set<Location>> index, final String alias, final Location location
+    ) {
+
+        index.computeIfPresent(alias, new BiFunction<String, Set<Location>, Set<Location>>() {
+            public Set<Location> apply(final String key, final Set<Location> locations) {
+
+                locations.remove(location);
+                return locations.isEmpty() ? null : locations;
+            }
+        });
+    }
+
+    /*package*/ static void added(final @CheckForNull Job<?, ?> job, final int buildNumber, final Collection<String> aliases) {
+
+        if (job == null || aliases.isEmpty()) return;
+
+        final Location location = new Location(job.getFullName(), buildNumber);
+        // Might be replayed later
+        final List<String> names = new ArrayList<String>(aliases);
+        apply(new Change() {
+            public void applyTo(final ConcurrentHashMap<String, Set<Location>> index) {
+
+                for (final String alias: names) {
+
+                    add(index, alias, location);
+                }
+            }
+        });
+    }
+
+    /*package*/ static void removed(final @CheckForNull Job<?, ?> job, final int buildNumber, final Collection<String> aliases) {
+
+        if (job == null || aliases.isEmpty()) return;
+
+        final Location location = new Location(job.getFullName(), buildNumber);
+        // Might be replayed later
+        final List<String> names = new ArrayList<String>(aliases);
+        apply(new Change() {
+            public void applyTo(final ConcurrentHashMap<String, Set<Location>> index) {
+
+                for (final String alias: names) {
+
+                    remove(index, alias, location);
+                }
+            }
+        });
+    }
+
+    /**
+     * Drop all aliases of the item and items nested in it.
+     */
+    /*package*/ static void forget(final String fullName) {
+
+        relocate(fullName, null);
+    }
+
+    private static void relocate(final String oldName, final @CheckForNull String newName) {
+
+        final String prefix = oldName + "/";
+        apply(new Change() {
+            public void applyTo(final ConcurrentHashMap<String, Set<Location>> index) {
+
+                // Collect first, relocated locations can match again when moved into a folder of the same name
+                final List<Map.Entry<String, Location>> matches = new ArrayList<Map.Entry<String, Location>>();
+                for (final Map.Entry<String, Set<Location>> entry: index.entrySet()) {
+
+                    for (final Location location: entry.getValue()) {
+
+                        if (location.job.equals(oldName) || location.job.startsWith(prefix)) {
+
+                            matches.add(new SimpleImmutableEntry<String, Location>(entry.getKey(), location));
+                        }
+                    }
+                }
+
+                for (final Map.Entry<String, Location> match: matches) {
+
+                    remove(index, match.getKey(), match.getValue());
+                }
+
+                if (newName == null) return;
+
+                for (final Map.Entry<String, Location> match: matches) {
+
+                    final Location location = match.getValue();
+                    final String name = newName + location.job.substring(oldName.length());
+                    add(index, match.getKey(), new Location(name, location.buildNumber));
+                }
+            }
+        });
+    }
+
+    /**
+     * Modification of the index.
+     */
+    private interface Change {
+
+        void applyTo(ConcurrentHashMap<String, Set<Location>> index);
+    }
+
+    /**
+     * Build of a job carrying an alias.
+     */
+    /*package*/ static final class Location implements Comparable<Location> {
+
+        /*package*/ final String job;
+        /*package*/ final int buildNumber;
+
+        private Location(final String job, final int buildNumber) {
+
+            this.job = job;
+            this.buildNumber = buildNumber;
+        }
+
+        public int compareTo(final Location other) {
+
+            final int byJob = job.compareTo(other.job);
+            return byJob != 0 ? byJob : Integer.compare(buildNumber, other.buildNumber);
+        }
+
+        @Override
+        public int hashCode() {
+
+            return 31 * job.hashCode() + buildNumber;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+
+            if (this == obj) return true;
+            if (!(obj instanceof Location)) return false;
+
+            final Location other = (Location) obj;
+            return buildNumber == other.buildNumber && job.equals(other.job);
+        }
+
+        @Override
+        public String toString() {
+
+            return job + " #" + buildNumber;
+        }
+    }
+
+    @Extension
+    public static class ItemChangeListener extends ItemListener {
+
+        /**
+         * Items were (re)loaded, build the index from scratch when needed.
+         */
+        @Override
+        public void onLoaded() {
+
+            LOCK.writeLock().lock();
+            try {
+
+                index = null;
+                pending = null;
+                generation++;
+            } finally {
+
+                LOCK.writeLock().unlock();
+            }
+        }
+
+        @Override
+        public void onLocationChanged(final Item item, final String oldFullName, final String newFullName) {
+
+            // Fired for nested items as well
+            if (item instanceof Job) {
+
+                relocate(oldFullName, newFullName);
+            }
+        }
+
+        @Override
+        public void onDeleted(final Item item) {
+
+            forget(item.getFullName());
+        }
+    }
+}
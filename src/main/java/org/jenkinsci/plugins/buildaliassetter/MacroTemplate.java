@@ -0,0 +1,391 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2013 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.buildaliassetter;
+
+import hudson.Util;
+import hudson.model.AbstractBuild;
+import hudson.model.TaskListener;
+import hudson.util.FormValidation;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.CheckForNull;
+
+import org.jenkinsci.plugins.buildaliassetter.AliasProvider.EvaluationPhase;
+import org.jenkinsci.plugins.tokenmacro.MacroEvaluationException;
+import org.jenkinsci.plugins.tokenmacro.TokenMacro;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
+
+/**
+ * Token macro template parsed ahead of time
+ *
+ * The template is split into literal text and macro references with their
+ * arguments, so each expansion only evaluates the macros. Macro extensions
+ * are looked up on first use and remembered. Templates using syntax this
+ * parser does not understand (transformations, escaping, etc.) are passed
+ * to {@link TokenMacro#expand} verbatim.
+ *
+ * @author ogondza
+ */
+/*package*/ final class MacroTemplate {
+
+    /**
+     * Macros that expand to the same value at the start and at the end of the build.
+     */
+    private static final Set<String> START_MACROS = new HashSet<String>(Arrays.asList(
+            "BUILD_NUMBER", "BUILD_ID", "BUILD_URL", "JOB_NAME", "JOB_URL", "JENKINS_URL",
+            "NODE_NAME", "ENV", "GIT_BRANCH", "GIT_REVISION", "SVN_REVISION"
+    ));
+
+    private final String template;
+
+    /**
+     * Literals and macros in order. Null if the template is expanded by token-macro itself.
+     */
+    private final @CheckForNull List<Object> segments;
+
+    private MacroTemplate(final String template, final List<Object> segments) {
+
+        this.template = template;
+        this.segments = segments;
+    }
+
+    /*package*/ static MacroTemplate compile(final String template) {
+
+        return new MacroTemplate(template, new Parser(Util.fixNull(template)).parse());
+    }
+
+    /**
+     * @return Names of macros used, null if the template was not understood.
+     */
+    /*package*/ @CheckForNull List<String> macroNames() {
+
+        if (segments == null) return null;
+
+        final List<String> names = new ArrayList<String>();
+        for (final Object segment: segments) {
+
+            if (segment instanceof Macro) {
+
+                names.add(((Macro) segment).name);
+            }
+        }
+
+        return names;
+    }
+
+    /**
+     * Evaluate at start only if all macros used are known to be stable.
+     */
+    /*package*/ EvaluationPhase evaluationPhase() {
+
+        final List<String> names = macroNames();
+        if (names == null) return EvaluationPhase.BOTH;
+
+        return START_MACROS.containsAll(names) ? EvaluationPhase.START : EvaluationPhase.BOTH;
+    }
+
+    /**
+     * Report macros no installed token macro accepts.
+     */
+    /*package*/ FormValidation validate() {
+
+        final List<String> names = macroNames();
+        if (names == null) return FormValidation.ok();
+
+        final List<String> unknown = new ArrayList<String>();
+        for (final String name: names) {
+
+            if (resolve(name) == null && !unknown.contains(name)) {
+
+                unknown.add(name);
+            }
+        }
+
+        return unknown.isEmpty()
+                ? FormValidation.ok()
+                : FormValidation.warning("Unknown macros: " + Util.join(unknown, ", "))
+        ;
+    }
+
+    private static @CheckForNull TokenMacro resolve(final String name) {
+
+        for (final TokenMacro candidate: TokenMacro.all()) {
+
+            if (candidate.acceptsMacroName(name)) return candidate;
+        }
+
+        return null;
+    }
+
+    /*package*/ String expand(
+            final AbstractBuild<?, ?> build, final TaskListener listener
+    ) throws MacroEvaluationException, IOException, InterruptedException {
+
+        if (segments == null) return TokenMacro.expand(build, listener, template);
+
+        final StringBuilder sb = new StringBuilder();
+        for (final Object segment: segments) {
+
+            if (segment instanceof Macro) {
+
+                sb.append(((Macro) segment).evaluate(build, listener, template));
+            } else {
+
+                sb.append((String) segment);
+            }
+        }
+
+        return sb.toString();
+    }
+
+    private static final class Macro {
+
+        private final String name;
+        private final Map<String, String> arguments;
+        private final ListMultimap<String, String> argumentMultimap;
+
+        private volatile TokenMacro macro;
+
+        private Macro(final String name, final ListMultimap<String, String> argumentMultimap) {
+
+            this.name = name;
+            this.argumentMultimap = argumentMultimap;
+
+            final Map<String, String> arguments = new HashMap<String, String>();
+            for (final Map.Entry<String, String> entry: argumentMultimap.entries()) {
+
+                arguments.put(entry.getKey(), entry.getValue());
+            }
+
+            this.arguments = Collections.unmodifiableMap(arguments);
+        }
+
+        private String evaluate(
+                final AbstractBuild<?, ?> build, final TaskListener listener, final String template
+        ) throws MacroEvaluationException, IOException, InterruptedException {
+
+            TokenMacro resolved = macro;
+            if (resolved == null) {
+
+                resolved = resolve(name);
+                if (resolved == null) throw new MacroEvaluationException(
+                        "Unrecognized macro '" + name + "' in '" + template + "'"
+                );
+
+                macro = resolved;
+            }
+
+            return resolved.evaluate(build, listener, name, arguments, argumentMultimap);
+        }
+    }
+
+    /**
+     * Parse <tt>$NAME</tt>, <tt>${NAME}</tt> and <tt>${NAME, arg="value", flag=true}</tt>.
+     */
+    private static final class Parser {
+
+        private final String template;
+        private int pos = 0;
+
+        private Parser(final String template) {
+
+            this.template = template;
+        }
+
+        /**
+         * @return Segments or null if the template uses unsupported syntax.
+         */
+        private List<Object> parse() {
+
+            final List<Object> segments = new ArrayList<Object>();
+            final StringBuilder literal = new StringBuilder();
+            while (pos < template.length()) {
+
+                final char c = template.charAt(pos);
+                if (c != '$') {
+
+                    literal.append(c);
+                    pos++;
+                    continue;
+                }
+
+                pos++;
+                final Macro macro = pos < template.length() && template.charAt(pos) == '{'
+                        ? braced()
+                        : bare()
+                ;
+
+                if (macro == null) return null;
+
+                if (literal.length() > 0) {
+
+                    segments.add(literal.toString());
+                    literal.setLength(0);
+                }
+
+                segments.add(macro);
+            }
+
+            if (literal.length() > 0) {
+
+                segments.add(literal.toString());
+            }
+
+            return segments;
+        }
+
+        private Macro bare() {
+
+            final String name = name();
+            if (name == null) return null;
+
+            return new Macro(name, ArrayListMultimap.<String, String>create());
+        }
+
+        private Macro braced() {
+
+            pos++; // {
+            skipWhitespace();
+
+            final String name = name();
+            if (name == null) return null;
+
+            final ListMultimap<String, String> args = ArrayListMultimap.create();
+            for (;;) {
+
+                skipWhitespace();
+                if (pos >= template.length()) return null;
+
+                final char c = template.charAt(pos++);
+                if (c == '}') return new Macro(name, args);
+                if (c != ',') return null;
+
+                skipWhitespace();
+                final String key = name();
+                if (key == null) return null;
+
+                skipWhitespace();
+                if (pos >= template.length() || template.charAt(pos) != '=') return null;
+                pos++;
+                skipWhitespace();
+
+                final String value = value();
+                if (value == null) return null;
+
+                args.put(key, value);
+            }
+        }
+
+        private String name() {
+
+            final int start = pos;
+            while (pos < template.length()) {
+
+                final char c = template.charAt(pos);
+                final boolean valid = c == '_' || (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z')
+                        || (pos > start && c >= '0' && c <= '9')
+                ;
+
+                if (!valid) break;
+                pos++;
+            }
+
+            return pos == start ? null : template.substring(start, pos);
+        }
+
+        /**
+         * Accept the values token-macro grammar does: integers, <tt>true</tt>,
+         * <tt>false</tt> and double-quoted strings. Escapes other than
+         * <tt>\"</tt> and <tt>\\</tt> are left to token-macro.
+         */
+        private String value() {
+
+            if (pos >= template.length()) return null;
+
+            final int start = pos;
+            final char first = template.charAt(pos);
+            if (first != '"') {
+
+                if (first == '-') pos++;
+                while (pos < template.length() && template.charAt(pos) >= '0' && template.charAt(pos) <= '9') {
+
+                    pos++;
+                }
+
+                if (pos > start && template.charAt(pos - 1) != '-') return template.substring(start, pos);
+
+                pos = start;
+                for (final String bool: new String[] {"true", "false"}) {
+
+                    if (template.startsWith(bool, pos)) {
+
+                        pos += bool.length();
+                        return bool;
+                    }
+                }
+
+                return null;
+            }
+
+            pos++;
+            final StringBuilder value = new StringBuilder();
+            while (pos < template.length()) {
+
+                char c = template.charAt(pos++);
+                if (c == '"') return value.toString();
+
+                if (c == '\\') {
+
+                    if (pos >= template.length()) return null;
+
+                    c = template.charAt(pos++);
+                    if (c != '"' && c != '\\') return null;
+                }
+
+                value.append(c);
+            }
+
+            return null;
+        }
+
+        private void skipWhitespace() {
+
+            while (pos < template.length() && Character.isWhitespace(template.charAt(pos))) {
+
+                pos++;
+            }
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2013 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.buildaliassetter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.CheckForNull;
+
+import jenkins.model.Jenkins;
+import org.jenkinsci.plugins.tokenmacro.MacroEvaluationException;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
+import hudson.Extension;
+import hudson.Util;
+import hudson.model.BuildListener;
+import hudson.model.AbstractBuild;
+import hudson.util.FormValidation;
+
+/**
+ * Provide several aliases from a single token macro expansion
+ *
+ * The template is expanded once and the result is split by the delimiter,
+ * or into lines when no delimiter is given. This way macros producing a
+ * list of values yield one alias per value.
+ *
+ * @author ogondza
+ */
+public class MultiAliasTokenMacroProvider extends AliasProvider {
+
+    public final String template;
+
+    private @CheckForNull String delimiter;
+
+    private transient MacroTemplate compiled;
+
+    @DataBoundConstructor
+    public MultiAliasTokenMacroProvider(final String template) {
+
+        this.template = template;
+        this.compiled = MacroTemplate.compile(template);
+    }
+
+    private Object readResolve() {
+
+        compiled = MacroTemplate.compile(template);
+        return this;
+    }
+
+    /**
+     * @return null when splitting into lines.
+     */
+    public @CheckForNull String getDelimiter() {
+
+        return delimiter;
+    }
+
+    @DataBoundSetter
+    public void setDelimiter(final String delimiter) {
+
+        this.delimiter = Util.fixEmpty(delimiter);
+    }
+
+    @Override
+    public EvaluationPhase evaluationPhase() {
+
+        return compiled.evaluationPhase();
+    }
+
+    @Override
+    public List<String> names(
+            final AbstractBuild<?, ?> build, final BuildListener listener
+    ) throws IOException, InterruptedException {
+
+        try {
+
+            return split(compiled.expand(build, listener), delimiter);
+        } catch (final MacroEvaluationException e) {
+
+            listener.getLogger().println(e.getMessage());
+        }
+
+        return Collections.emptyList();
+    }
+
+    /**
+     * Split expanded value into trimmed, non-empty names.
+     *
+     * @param delimiter Separator or null to split by line.
+     */
+    /*package*/ static List<String> split(final String value, final @CheckForNull String delimiter) {
+
+        final List<String> names = new ArrayList<String>();
+
+        int start = 0;
+        while (start <= value.length()) {
+
+            int end;
+            int next;
+            if (delimiter == null) {
+
+                end = nextLineBreak(value, start);
+                next = end < value.length() && value.charAt(end) == '\r'
+                        && end + 1 < value.length() && value.charAt(end + 1) == '\n'
+                        ? end + 2
+                        : end + 1
+                ;
+            } else {
+
+                end = value.indexOf(delimiter, start);
+                if (end == -1) end = value.length();
+                next = end + delimiter.length();
+            }
+
+            final String name = value.substring(start, end).trim();
+            if (!name.isEmpty()) {
+
+                names.add(name);
+            }
+
+            start = next;
+        }
+
+        return names;
+    }
+
+    private static int nextLineBreak(final String value, final int start) {
+
+        for (int i = start; i < value.length(); i++) {
+
+            final char c = value.charAt(i);
+            if (c == '\n' || c == '\r') return i;
+        }
+
+        return value.length();
+    }
+
+    @Override
+    public DescriptorImpl getDescriptor() {
+
+        return (DescriptorImpl) Jenkins.get().getDescriptorOrDie(MultiAliasTokenMacroProvider.class);
+    }
+
+    @Extension
+    public static class DescriptorImpl extends AliasProvider.Descriptor {
+
+        @Override
+        public String getDisplayName() {
+
+            return "Token macro aliases";
+        }
+
+        public FormValidation doCheckTemplate(@QueryParameter final String value) {
+
+            return MacroTemplate.compile(value).validate();
+        }
+    }
+}
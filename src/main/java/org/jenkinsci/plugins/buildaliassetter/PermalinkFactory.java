@@ -24,28 +24,41 @@
 package org.jenkinsci.plugins.buildaliassetter;
 
 import hudson.Extension;
-import hudson.model.AbstractProject;
 import hudson.model.Action;
-import hudson.model.TransientProjectActionFactory;
+import hudson.model.Job;
 
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 
+import javax.annotation.Nonnull;
+
+import jenkins.model.TransientActionFactory;
+
+/**
+ * Contribute {@link PermalinkStorage} of any kind of job as its action.
+ *
+ * @author ogondza
+ */
 @Extension
-public class PermalinkFactory extends TransientProjectActionFactory {
+@SuppressWarnings("rawtypes")
+public class PermalinkFactory extends TransientActionFactory<Job> {
 
     @Override
-    @SuppressWarnings("rawtypes")
-    public Collection<? extends Action> createFor(AbstractProject target) {
-        
-        final PermalinkStorage storage = ((AbstractProject<?, ?>)target)
+    public Class<Job> type() {
+
+        return Job.class;
+    }
+
+    @Override
+    public @Nonnull Collection<? extends Action> createFor(final @Nonnull Job target) {
+
+        final PermalinkStorage storage = ((Job<?, ?>) target)
                 .getProperty(PermalinkStorage.class)
         ;
-        
+
         return storage == null
                 ? Collections.<Action>emptyList()
-                : Arrays.asList(storage)
+                : Collections.singletonList(storage)
         ;
-    }        
-}
\ No newline at end of file
+    }
+}
@@ -26,72 +26,848 @@ package org.jenkinsci.plugins.buildaliassetter;
 import hudson.Extension;
 import hudson.model.JobProperty;
 import hudson.model.JobPropertyDescriptor;
-import hudson.model.AbstractBuild;
 import hudson.model.Descriptor.FormException;
 import hudson.model.Job;
 import hudson.model.PermalinkProjectAction;
+import hudson.model.Run;
+import hudson.model.Saveable;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.CheckForNull;
+
+import jenkins.model.Jenkins;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 
 import net.sf.json.JSONObject;
 
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
 
 /**
  * List of {@link Alias}es attached to a particular {@link Job}
  *
+ * The storage is safe for concurrent use. Buckets are never modified in place
+ * but replaced atomically per build number, so writers for different builds
+ * do not block each other and readers never take a lock.
+ *
+ * Buckets are plain arrays of alias names interned across all jobs, so a
+ * name repeated in many builds is held in memory just once.
+ *
+ * Aliases are persisted in a separate {@link AliasStore} file in the job
+ * directory rather than in <tt>config.xml</tt>. The file is read on first
+ * access, so only the empty property element is loaded with the job.
+ *
  * @author ogondza
  */
-public class PermalinkStorage extends JobProperty<Job<?,?>> implements PermalinkProjectAction {
+public class PermalinkStorage extends JobProperty<Job<?,?>> implements PermalinkProjectAction, Saveable {
+
+    private final static Logger LOGGER = Logger.getLogger(PermalinkStorage.class.getName());
+
+    /**
+     * Url of the action under the job. Reserved as an alias so it is not shadowed.
+     */
+    /*package*/ static final String URL_NAME = "alias";
+
+    /**
+     * Aliases used to be serialized in <tt>config.xml</tt>. Read to migrate them to {@link AliasStore}.
+     */
+    @Deprecated
+    private ConcurrentHashMap<Integer, LinkedHashSet<String>> permalinks;
+
+    /**
+     * Shared instances of alias names, collected once no storage refers to them.
+     */
+    private static final Interner<String> NAMES = Interners.newWeakInterner();
 
-    private final Map<Integer, LinkedHashSet<String>> permalinks;
+    /**
+     * Aliases per build number in order of insertion, without duplicates.
+     */
+    private transient ConcurrentHashMap<Integer, String[]> buckets;
+
+    /**
+     * Details of aliased builds per build number, so they need not be loaded to list aliases.
+     */
+    private transient ConcurrentHashMap<Integer, BuildMetadata> metadata;
+
+    /**
+     * Alias name to the permalink of the latest build carrying it.
+     *
+     * Maintained incrementally by {@link #addAliases} and {@link #deleteAliases}.
+     */
+    private transient ConcurrentHashMap<String, Alias> index;
+
+    /**
+     * Cached result of {@link #getPermalinks()}, valid until {@link #modifications} changes.
+     */
+    private transient volatile Snapshot snapshot;
+
+    /**
+     * Incremented after every index modification.
+     */
+    private transient AtomicLong modifications;
+
+    /**
+     * Changes not yet appended to the {@link AliasStore} journal.
+     *
+     * Records are enqueued while holding the bucket so their order matches the order of changes per build.
+     */
+    private transient ConcurrentLinkedQueue<AliasStore.Record> journal;
+
+    /**
+     * Content of the {@link AliasStore} was read.
+     */
+    private transient volatile boolean loaded;
+
+    /**
+     * Next save should rewrite the snapshot instead of appending to the journal.
+     */
+    private transient volatile boolean compact;
+
+    /**
+     * Existing {@link AliasStore} content could not be read, so it must never be rewritten.
+     *
+     * Changes are only appended to the journal so they replay on top of the
+     * stored history once it is readable again.
+     */
+    private transient volatile boolean unreadable;
 
     @DataBoundConstructor
     public PermalinkStorage() {
 
-        permalinks = new HashMap<Integer, LinkedHashSet<String>>();
+        readResolve();
+    }
+
+    private Object readResolve() {
+
+        buckets = new ConcurrentHashMap<Integer, String[]>();
+        metadata = new ConcurrentHashMap<Integer, BuildMetadata>();
+        index = new ConcurrentHashMap<String, Alias>();
+        modifications = new AtomicLong();
+        journal = new ConcurrentLinkedQueue<AliasStore.Record>();
+
+        return this;
+    }
+
+    /**
+     * Read the aliases when accessed for the first time.
+     */
+    private void ensureLoaded() {
+
+        if (loaded) return;
+
+        synchronized (this) {
+
+            if (loaded || owner == null) return;
+
+            load();
+            loaded = true;
+            AliasMetrics.loaded(this);
+        }
+    }
+
+    private void load() {
+
+        final AliasStore store = store();
+        try {
+
+            final Map<Integer, BuildMetadata> stored = new HashMap<Integer, BuildMetadata>();
+            final Map<Integer, LinkedHashSet<String>> content = store.read(stored);
+            metadata.putAll(stored);
+
+            for (final Map.Entry<Integer, LinkedHashSet<String>> entry: content.entrySet()) {
+
+                addAliases(entry.getKey(), entry.getValue(), false);
+            }
+        } catch (final IOException ex) {
+
+            unreadable = true;
+            LOGGER.log(Level.SEVERE, "Unable to read build aliases of " + owner.getFullName()
+                    + ", stored aliases will not be rewritten until the job is reloaded", ex);
+        }
+
+        // Fold the journal into snapshot so nothing gets appended after a record torn by a crash
+        if (!unreadable && store.journalSize() > 0) {
+
+            compact = true;
+            AliasPersister.save(this);
+        }
+
+        if (permalinks != null) {
+
+            for (final Map.Entry<Integer, LinkedHashSet<String>> entry: permalinks.entrySet()) {
+
+                addAliases(entry.getKey(), entry.getValue(), false);
+            }
+
+            if (unreadable) return;
+
+            // Move the data out of config.xml once it is safely written elsewhere
+            try {
+
+                writeSnapshot(store);
+            } catch (final IOException ex) {
+
+                LOGGER.log(Level.WARNING, "Unable to migrate build aliases of " + owner.getFullName(), ex);
+                return;
+            }
+
+            permalinks = null;
+            AliasPersister.save(owner);
+        }
+    }
+
+    /**
+     * Rewrite the snapshot with the current content.
+     */
+    private void writeSnapshot(final AliasStore store) throws IOException {
+
+        compact = false;
+        final Map<Integer, List<String>> content = new TreeMap<Integer, List<String>>();
+        for (final Map.Entry<Integer, String[]> entry: buckets.entrySet()) {
+
+            content.put(entry.getKey(), Arrays.asList(entry.getValue()));
+        }
+
+        store.compact(content, metadata);
+    }
+
+    /**
+     * Write pending changes to the job's {@link AliasStore}.
+     *
+     * Changes are appended to the journal that gets compacted into snapshot
+     * once it grows past {@link AliasStore#COMPACTION_THRESHOLD}.
+     */
+    public synchronized void save() throws IOException {
+
+        if (owner == null || !loaded) return;
+
+        final List<AliasStore.Record> records = new ArrayList<AliasStore.Record>();
+        for (AliasStore.Record record = journal.poll(); record != null; record = journal.poll()) {
+
+            records.add(record);
+        }
+
+        // Job was deleted in the meantime
+        if (!owner.getRootDir().isDirectory()) return;
+
+        final AliasStore store = store();
+        final long start = System.nanoTime();
+        try {
+
+            if (!unreadable && (compact || store.journalSize() > AliasStore.COMPACTION_THRESHOLD)) {
+
+                writeSnapshot(store);
+                // Changes drained before their buckets were published might be missing in the snapshot, replaying is idempotent
+                store.append(records);
+            } else {
+
+                store.append(records);
+            }
+        } catch (final IOException ex) {
+
+            // Drained records are lost for the journal, rewrite everything next time
+            compact = true;
+            throw ex;
+        } finally {
+
+            AliasMetrics.saved(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Get storage of the job, attaching a new one if there is none.
+     */
+    /*package*/ static PermalinkStorage forJob(final Job<?, ?> job) throws IOException {
+
+        PermalinkStorage storage = job.getProperty(PermalinkStorage.class);
+        if (storage != null) return storage;
+
+        // Concurrent builds of the same job must not attach several storages
+        synchronized (job) {
+
+            storage = job.getProperty(PermalinkStorage.class);
+            if (storage == null) {
+
+                storage = new PermalinkStorage();
+                job.addProperty(storage);
+            }
+        }
+
+        return storage;
+    }
+
+    /**
+     * Get storage attached to the job now. The job might have been reloaded since it was looked up.
+     */
+    /*package*/ static @CheckForNull PermalinkStorage current(final Job<?, ?> job) {
+
+        Job<?, ?> current = job;
+        final Jenkins jenkins = Jenkins.getInstanceOrNull();
+        if (jenkins != null) {
+
+            try (ACLContext ctx = ACL.as2(ACL.SYSTEM2)) {
+
+                current = jenkins.getItemByFullName(job.getFullName(), Job.class);
+            }
+        }
+
+        return current == null ? null : current.getProperty(PermalinkStorage.class);
+    }
+
+    /*package*/ AliasStore store() {
+
+        return new AliasStore(owner.getRootDir());
     }
 
     public List<Permalink> getPermalinks() {
 
-        final Map<String, Permalink> links = new TreeMap<String, Permalink>();
-        for (final Map.Entry<Integer, LinkedHashSet<String>> entry: permalinks.entrySet()) {
+        ensureLoaded();
+
+        final long version = modifications.get();
+
+        final Snapshot cached = snapshot;
+        if (cached != null && cached.version == version) return cached.permalinks;
+
+        // Writes concurrent with the copy bump the version so the result will not be reused
+        final Map<String, Permalink> sorted = new TreeMap<String, Permalink>(index);
+        final List<Permalink> links = Collections.unmodifiableList(new ArrayList<Permalink>(sorted.values()));
+        snapshot = new Snapshot(version, links);
+
+        return links;
+    }
+
+    /**
+     * Find the permalink for an alias without materializing the whole list.
+     *
+     * @return Permalink to the latest build with given alias or null.
+     */
+    public @CheckForNull Permalink resolve(final String alias) {
+
+        ensureLoaded();
+
+        final Alias found = index.get(alias);
+        AliasMetrics.lookedUp(found != null);
+        return found;
+    }
+
+    /**
+     * Resolve <tt>/job/&lt;job-name>/alias/&lt;alias></tt>.
+     *
+     * Stapler reaches this only after {@link Job#getDynamic} has scanned all
+     * permalinks of the job, aliases included, so the lookup is linear in the
+     * number of aliases. {@link BuildAliasesAction#doResolve} avoids the scan.
+     */
+    public Run<?, ?> getDynamic(final String token, final StaplerRequest req, final StaplerResponse rsp) {
+
+        final Permalink permalink = resolve(token);
+        return permalink == null ? null : permalink.resolve(owner);
+    }
+
+    /**
+     * Walk aliases of all builds in ascending build number order.
+     *
+     * Storage that is not loaded yet is read from its {@link AliasStore} for
+     * the walk only and stays unloaded. Buckets of loaded storage are read as
+     * they are at the time each build is visited.
+     *
+     * @param since Lowest build timestamp to visit. Builds without known timestamp are visited only for non-positive values.
+     * @return false if the visitor stopped the walk.
+     */
+    /*package*/ boolean visit(final long since, final Visitor visitor) throws IOException {
+
+        final Map<Integer, BuildMetadata> storedMetadata = new HashMap<Integer, BuildMetadata>();
+        final Map<Integer, LinkedHashSet<String>> stored = readUnloaded(storedMetadata);
+        if (stored != null) {
+
+            for (final Map.Entry<Integer, LinkedHashSet<String>> entry: stored.entrySet()) {
+
+                final BuildMetadata buildMetadata = storedMetadata.get(entry.getKey());
+                if (!isSince(buildMetadata, since)) continue;
+
+                for (final String alias: entry.getValue()) {
+
+                    if (!visitor.visit(entry.getKey(), alias, buildMetadata)) return false;
+                }
+            }
+
+            return true;
+        }
+
+        final int[] buildNumbers = new int[buckets.size()];
+        int size = 0;
+        for (final Integer buildNumber: buckets.keySet()) {
+
+            if (size == buildNumbers.length) break; // Added in the meantime
+            buildNumbers[size++] = buildNumber;
+        }
+        Arrays.sort(buildNumbers, 0, size);
+
+        for (int i = 0; i < size; i++) {
+
+            final int buildNumber = buildNumbers[i];
+            final BuildMetadata buildMetadata = metadata.get(buildNumber);
+            if (!isSince(buildMetadata, since)) continue;
+
+            final String[] bucket = buckets.get(buildNumber);
+            if (bucket == null) continue;
+
+            for (final String alias: bucket) {
+
+                if (!visitor.visit(buildNumber, alias, buildMetadata)) return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Read the store content unless the storage is loaded.
+     *
+     * Holding the lock, the storage can neither get loaded nor rewrite the store while it is read.
+     *
+     * @return Aliases per build number, null if the content is in memory.
+     */
+    private synchronized @CheckForNull Map<Integer, LinkedHashSet<String>> readUnloaded(
+            final Map<Integer, BuildMetadata> storedMetadata
+    ) throws IOException {
+
+        // Nothing to read for detached storage
+        if (loaded || owner == null) return null;
+
+        // Not migrated out of config.xml yet
+        if (permalinks != null) {
+
+            ensureLoaded();
+            return null;
+        }
+
+        return store().read(storedMetadata);
+    }
+
+    private static boolean isSince(final @CheckForNull BuildMetadata buildMetadata, final long since) {
+
+        if (since <= 0) return true;
+
+        return buildMetadata != null && buildMetadata.getTimestamp() >= since;
+    }
+
+    /*package*/ interface Visitor {
+
+        /**
+         * @param metadata Details of the build, null if not known.
+         * @return false to stop the walk.
+         */
+        boolean visit(int buildNumber, String alias, @CheckForNull BuildMetadata metadata) throws IOException;
+    }
+
+    /*package*/ void addAliases(final Run<?, ?> build, final LinkedHashSet<String> aliases) {
+
+        ensureLoaded();
+
+        describe(build);
+        addAliases(build.getNumber(), aliases, true);
+    }
+
+    /**
+     * Refresh metadata of an aliased build.
+     *
+     * Storage that is not loaded stays so. Metadata of builds aliases were set
+     * for is appended to the journal directly and dropped on read in case the
+     * build ended up without aliases.
+     *
+     * @return true if the metadata has changed and needs to be saved.
+     */
+    /*package*/ boolean updateMetadata(final Run<?, ?> build) {
+
+        if (!loaded) {
+
+            // Loading replays the record and compacts only after it was appended
+            synchronized (this) {
+
+                if (!loaded) {
+
+                    if (owner != null && build.getAction(AliasTimingAction.class) != null) {
+
+                        appendMetadata(build);
+                    }
+                    return false;
+                }
+            }
+        }
+
+        if (!buckets.containsKey(build.getNumber())) return false;
+
+        return describe(build);
+    }
+
+    private void appendMetadata(final Run<?, ?> build) {
+
+        try {
+
+            store().append(Collections.singletonList(
+                    AliasStore.Record.metadata(build.getNumber(), BuildMetadata.of(build))
+            ));
+        } catch (final IOException ex) {
+
+            LOGGER.log(Level.WARNING, "Unable to record metadata of " + build.getFullDisplayName(), ex);
+        }
+    }
+
+    private boolean describe(final Run<?, ?> build) {
+
+        final boolean[] changed = { false };
+        metadata.compute(build.getNumber(), new BiFunction<Integer, BuildMetadata, BuildMetadata>() {
+            public BuildMetadata apply(final Integer key, final BuildMetadata current) {
+
+                final BuildMetadata updated = current == null ? BuildMetadata.of(build) : current;
+                if (current == null || current.update(build)) {
+
+                    changed[0] = true;
+                    journal.add(AliasStore.Record.metadata(key, updated));
+                }
+
+                return updated;
+            }
+        });
+
+        return changed[0];
+    }
+
+    /**
+     * Add aliases to the build without loading the storage first.
+     *
+     * @param record Append the change to the journal.
+     */
+    /*package*/ void addAliases(final int buildNumber, final Set<String> aliases, final boolean record) {
+
+        final boolean[] changed = { false };
+        buckets.compute(buildNumber, new BiFunction<Integer, String[], String[]>() {
+            public String[] apply(final Integer key, final String[] bucket) {
+
+                final String[] updated = with(bucket, aliases);
+                if (updated == bucket) return bucket;
+
+                changed[0] = true;
+
+                if (record) {
+
+                    journal.add(AliasStore.Record.add(key, new ArrayList<String>(aliases)));
+                }
+
+                return updated;
+            }
+        });
+
+        if (changed[0]) {
+
+            indexAliases(buildNumber, aliases);
+
+            // Aliases read from the store are indexed globally when the storage is visited
+            if (record) {
+
+                GlobalAliasIndex.added(owner, buildNumber, aliases);
+            }
+        }
+    }
+
+    /*package*/ void deleteAliases(final Run<?, ?> build) {
+
+        deleteBuilds(Collections.singleton(build.getNumber()));
+    }
+
+    /**
+     * Delete aliases of several builds at once.
+     *
+     * Aliases left without a build are resolved again only once for all the builds.
+     */
+    /*package*/ void deleteBuilds(final Collection<Integer> buildNumbers) {
+
+        ensureLoaded();
+
+        deleteAliases(buildNumbers);
+    }
+
+    /**
+     * Keep aliases of given number of latest aliased builds only.
+     */
+    /*package*/ void retainLatestBuilds(final int maxBuilds) {
+
+        ensureLoaded();
+
+        final int excess = buckets.size() - maxBuilds;
+        if (excess <= 0) return;
+
+        final List<Integer> buildNumbers = new ArrayList<Integer>(buckets.keySet());
+        Collections.sort(buildNumbers);
+
+        deleteAliases(buildNumbers.subList(0, Math.min(excess, buildNumbers.size())));
+    }
+
+    /**
+     * Delete aliases of the builds without loading the storage first.
+     */
+    /*package*/ void deleteAliases(final Collection<Integer> buildNumbers) {
+
+        // Only aliases pointing to the deleted builds need to be resolved again
+        final Set<String> orphans = new HashSet<String>();
+        for (final int buildNumber: buildNumbers) {
+
+            final List<String[]> removed = new ArrayList<String[]>(1);
+            buckets.computeIfPresent(buildNumber, new BiFunction<Integer, String[], String[]>() {
+                public String[] apply(final Integer key, final String[] bucket) {
+
+                    removed.add(bucket);
+                    metadata.remove(key);
+                    journal.add(AliasStore.Record.delete(key));
+                    return null;
+                }
+            });
+
+            if (removed.isEmpty()) continue;
+
+            GlobalAliasIndex.removed(owner, buildNumber, Arrays.asList(removed.get(0)));
+
+            for (final String alias: removed.get(0)) {
+
+                final Alias current = index.get(alias);
+                if (current != null && current.getBuildNumber() == buildNumber && index.remove(alias, current)) {
+
+                    orphans.add(alias);
+                }
+            }
+        }
+
+        reindex(orphans);
+    }
+
+    /**
+     * Keep given aliases only for the latest build and given number of builds before it.
+     */
+    /*package*/ void retainAliasHistory(final Collection<String> aliases, final int depth) {
+
+        ensureLoaded();
+
+        final Map<String, List<Integer>> holders = new HashMap<String, List<Integer>>();
+        for (final Map.Entry<Integer, String[]> entry: buckets.entrySet()) {
+
+            for (final String alias: aliases) {
+
+                if (indexOf(entry.getValue(), alias) < 0) continue;
+
+                List<Integer> buildNumbers = holders.get(alias);
+                if (buildNumbers == null) {
+
+                    buildNumbers = new ArrayList<Integer>();
+                    holders.put(alias, buildNumbers);
+                }
+
+                buildNumbers.add(entry.getKey());
+            }
+        }
+
+        final Set<String> orphans = new HashSet<String>();
+        for (final Map.Entry<String, List<Integer>> entry: holders.entrySet()) {
+
+            final List<Integer> buildNumbers = entry.getValue();
+            if (buildNumbers.size() <= depth + 1) continue;
+
+            Collections.sort(buildNumbers, Collections.reverseOrder());
+            for (final int buildNumber: buildNumbers.subList(depth + 1, buildNumbers.size())) {
+
+                orphans.addAll(removeAliases(buildNumber, Collections.singleton(entry.getKey())));
+            }
+        }
+
+        reindex(orphans);
+    }
+
+    /*package*/ void removeAliases(final Run<?, ?> build, final Collection<String> aliases) {
+
+        ensureLoaded();
+
+        reindex(removeAliases(build.getNumber(), aliases));
+    }
+
+    /**
+     * Remove some aliases of a build.
+     *
+     * @return Aliases that were pointing to the build and need to be reindexed.
+     */
+    private Set<String> removeAliases(final int buildNumber, final Collection<String> aliases) {
+
+        final boolean[] changed = { false };
+        buckets.computeIfPresent(buildNumber, new BiFunction<Integer, String[], String[]>() {
+            public String[] apply(final Integer key, final String[] bucket) {
+
+                final String[] updated = without(bucket, aliases);
+                if (updated == bucket) return bucket;
+
+                changed[0] = true;
+                journal.add(AliasStore.Record.remove(key, new ArrayList<String>(aliases)));
+                if (updated.length > 0) return updated;
+
+                metadata.remove(key);
+                return null;
+            }
+        });
+
+        if (!changed[0]) return Collections.emptySet();
+
+        GlobalAliasIndex.removed(owner, buildNumber, aliases);
+
+        final Set<String> orphans = new HashSet<String>();
+        for (final String alias: aliases) {
+
+            final Alias current = index.get(alias);
+            if (current != null && current.getBuildNumber() == buildNumber && index.remove(alias, current)) {
+
+                orphans.add(alias);
+            }
+        }
+
+        return orphans;
+    }
+
+    /**
+     * Point orphaned aliases to the latest build that still has them.
+     */
+    private void reindex(final Set<String> orphans) {
+
+        if (orphans.isEmpty()) return;
+
+        for (final Map.Entry<Integer, String[]> entry: buckets.entrySet()) {
 
-            final int buildNumber = entry.getKey();
             for (final String alias: entry.getValue()) {
 
-                Alias permalink = (Alias) links.get(alias);
-                if (permalink == null || permalink.getBuildNumber() < buildNumber ) {
-                    links.put(alias, new Alias(buildNumber, alias));
+                if (orphans.contains(alias)) {
+
+                    indexAlias(entry.getKey(), alias);
                 }
             }
         }
 
-        return new ArrayList<Permalink>(links.values());
+        modifications.incrementAndGet();
+    }
+
+    /**
+     * @return Bucket with aliases appended, the same instance if none of them was missing.
+     */
+    private static String[] with(final String[] bucket, final Collection<String> aliases) {
+
+        final String[] current = bucket == null ? new String[0] : bucket;
+
+        final List<String> added = new ArrayList<String>(aliases.size());
+        for (final String alias: aliases) {
+
+            if (indexOf(current, alias) < 0 && !added.contains(alias)) {
+
+                added.add(NAMES.intern(alias));
+            }
+        }
+
+        if (added.isEmpty()) return bucket;
+
+        final String[] updated = Arrays.copyOf(current, current.length + added.size());
+        for (int i = 0; i < added.size(); i++) {
+
+            updated[current.length + i] = added.get(i);
+        }
+
+        return updated;
+    }
+
+    /**
+     * @return Bucket without given aliases, the same instance if none of them was present.
+     */
+    private static String[] without(final String[] bucket, final Collection<String> aliases) {
+
+        final List<String> retained = new ArrayList<String>(bucket.length);
+        for (final String alias: bucket) {
+
+            if (!aliases.contains(alias)) {
+
+                retained.add(alias);
+            }
+        }
+
+        return retained.size() == bucket.length ? bucket : retained.toArray(new String[retained.size()]);
+    }
+
+    private static int indexOf(final String[] bucket, final String alias) {
+
+        for (int i = 0; i < bucket.length; i++) {
+
+            if (bucket[i].equals(alias)) return i;
+        }
+
+        return -1;
+    }
+
+    private void indexAliases(final int buildNumber, final Set<String> aliases) {
+
+        for (final String alias: aliases) {
+
+            indexAlias(buildNumber, alias);
+        }
     }
 
-    /*package*/ void addAliases(final AbstractBuild<?, ?> build, final LinkedHashSet<String> aliases) {
+    private void indexAlias(final int buildNumber, final String alias) {
+
+        Alias current = index.get(alias);
+        while (current == null || current.getBuildNumber() < buildNumber) {
 
-        final int buildNumber = build.getNumber();
+            final String name = NAMES.intern(alias);
+            final Alias candidate = new Alias(buildNumber, name, metadata.get(buildNumber));
+            final boolean replaced = current == null
+                    ? index.putIfAbsent(name, candidate) == null
+                    : index.replace(name, current, candidate)
+            ;
 
-        LinkedHashSet<String> bucket = permalinks.get(buildNumber);
-        if (bucket == null) {
-            bucket = new LinkedHashSet<String>(aliases.size());
-            permalinks.put(buildNumber, bucket);
+            if (replaced) {
+
+                modifications.incrementAndGet();
+                return;
+            }
+
+            current = index.get(alias);
         }
+    }
+
+    /*package*/ int aliasedBuilds() {
 
-        bucket.addAll(aliases);
+        return buckets.size();
     }
 
-    /*package*/ void deleteAliases(final AbstractBuild<?, ?> build) {
+    /*package*/ int distinctAliases() {
 
-        permalinks.remove(build.getNumber());
+        return index.size();
+    }
+
+    public Job<?, ?> getJob() {
+        return owner;
     }
 
     public String getIconFileName() {
@@ -103,7 +879,7 @@ public class PermalinkStorage extends JobProperty<Job<?,?>> implements Permalink
     }
 
     public String getUrlName() {
-        return null;
+        return URL_NAME;
     }
 
     @Override
@@ -113,6 +889,18 @@ public class PermalinkStorage extends JobProperty<Job<?,?>> implements Permalink
         return this;
     }
 
+    private static final class Snapshot {
+
+        private final long version;
+        private final List<Permalink> permalinks;
+
+        private Snapshot(final long version, final List<Permalink> permalinks) {
+
+            this.version = version;
+            this.permalinks = permalinks;
+        }
+    }
+
     @Extension
     public static class DescriptorImpl extends JobPropertyDescriptor {
 
@@ -0,0 +1,58 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2013 Red Hat, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.jenkinsci.plugins.buildaliassetter;
+
+import hudson.Extension;
+import hudson.cli.CLICommand;
+
+import java.util.Map;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Apply {@link AliasBatch} read from standard input.
+ *
+ * @author ogondza
+ */
+@Extension
+public class SetBuildAliasesCommand extends CLICommand {
+
+    @Override
+    public String getShortDescription() {
+
+        return "Add or remove aliases of many builds at once, reading JSON batch from stdin";
+    }
+
+    @Override
+    protected int run() throws Exception {
+
+        final AliasBatch batch = AliasBatch.parse(IOUtils.toString(stdin, getClientCharset()));
+        for (final Map.Entry<String, Integer> entry: batch.apply().entrySet()) {
+
+            stdout.println(entry.getKey() + ": " + entry.getValue() + " build(s) updated");
+        }
+
+        return 0;
+    }
+}
@@ -30,12 +30,13 @@ import java.util.List;
 
 import jenkins.model.Jenkins;
 import org.jenkinsci.plugins.tokenmacro.MacroEvaluationException;
-import org.jenkinsci.plugins.tokenmacro.TokenMacro;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.QueryParameter;
 import hudson.Extension;
 import hudson.model.BuildListener;
 import hudson.model.AbstractBuild;
 import hudson.model.Hudson;
+import hudson.util.FormValidation;
 
 /**
  * Provide aliases expanding token macro
@@ -46,10 +47,28 @@ public class TokenMacroAliasProvider extends AliasProvider {
 
     public final String template;
 
+    private transient MacroTemplate compiled;
+
     @DataBoundConstructor
     public TokenMacroAliasProvider(final String template) {
 
         this.template = template;
+        this.compiled = MacroTemplate.compile(template);
+    }
+
+    private Object readResolve() {
+
+        compiled = MacroTemplate.compile(template);
+        return this;
+    }
+
+    /**
+     * Evaluate only at the start if all macros used are known to be stable.
+     */
+    @Override
+    public EvaluationPhase evaluationPhase() {
+
+        return compiled.evaluationPhase();
     }
 
     @Override
@@ -60,7 +79,7 @@ public class TokenMacroAliasProvider extends AliasProvider {
         try {
 
             return Arrays.asList(
-                    TokenMacro.expand(build, listener, template)
+                    compiled.expand(build, listener)
             );
         } catch (final MacroEvaluationException e) {
 
@@ -84,5 +103,10 @@ public class TokenMacroAliasProvider extends AliasProvider {
 
             return "Token macro alias";
         }
+
+        public FormValidation doCheckTemplate(@QueryParameter final String value) {
+
+            return MacroTemplate.compile(value).validate();
+        }
     }
 }
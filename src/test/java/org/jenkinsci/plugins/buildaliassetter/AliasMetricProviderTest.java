@@ -0,0 +1,40 @@
+package org.jenkinsci.plugins.buildaliassetter;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.Timer;
+
+public class AliasMetricProviderTest {
+
+    private final AliasMetricProvider provider = new AliasMetricProvider();
+
+    @After
+    public void tearDown() {
+
+        AliasMetrics.setListener(null);
+    }
+
+    @Test
+    public void publishCountersAndTimers() {
+
+        final Map<String, Metric> metrics = provider.getMetricSet().getMetrics();
+
+        AliasMetrics.lookedUp(true);
+        AliasMetrics.lookedUp(false);
+        AliasMetrics.validated(1000);
+        AliasMetrics.saved(2000);
+
+        assertThat(((Counter) metrics.get("buildaliassetter.lookup.count")).getCount(), equalTo(2L));
+        assertThat(((Counter) metrics.get("buildaliassetter.lookup.misses")).getCount(), equalTo(1L));
+        assertThat(((Timer) metrics.get("buildaliassetter.validation")).getCount(), equalTo(1L));
+        assertThat(((Timer) metrics.get("buildaliassetter.save")).getCount(), equalTo(1L));
+    }
+}
@@ -1,20 +1,32 @@
 package org.jenkinsci.plugins.buildaliassetter;
 
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+
 import hudson.matrix.MatrixBuild;
+import hudson.model.AbstractBuild;
 import hudson.model.BuildListener;
 import hudson.model.AbstractProject;
 import hudson.tasks.BuildWrapper.Environment;
+import hudson.util.DescribableList;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.jenkinsci.plugins.buildaliassetter.BuildAliasSetter.DanglingAliasDeleter;
 import org.jenkinsci.plugins.buildaliassetter.util.DummyProvider;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
@@ -38,7 +50,9 @@ public class AliasSettingTest {
 
         Mockito.doReturn(42).when(build).getNumber();
         Mockito.doReturn(project).when(build).getProject();
+        Mockito.doReturn(project).when(build).getParent();
         Mockito.doReturn(storage).when(project).getProperty(PermalinkStorage.class);
+        Mockito.doReturn("project").when(project).getFullName();
 
         Mockito.doReturn(logger).when(listener).getLogger();
     }
@@ -50,8 +64,36 @@ public class AliasSettingTest {
 
         deleter.onDeleted(build);
 
-        Mockito.verify(storage).deleteAliases(build);
-        Mockito.verify(project).save();
+        DanglingAliasDeleter.flush();
+        Mockito.verify(storage).deleteBuilds(Collections.singleton(42));
+
+        AliasPersister.flush();
+        Mockito.verify(storage).save();
+        // Looked up to key the pending save
+        Mockito.verify(storage, Mockito.atLeastOnce()).getJob();
+
+        Mockito.verifyNoMoreInteractions(storage);
+    }
+
+    @Test
+    public void deleteAliasesOfRotatedBuildsAtOnce() throws IOException {
+
+        final DanglingAliasDeleter deleter = new BuildAliasSetter.DanglingAliasDeleter();
+
+        final MatrixBuild older = Mockito.mock(MatrixBuild.class);
+        Mockito.doReturn(41).when(older).getNumber();
+        Mockito.doReturn(project).when(older).getParent();
+
+        deleter.onDeleted(older);
+        deleter.onDeleted(build);
+
+        Mockito.verifyZeroInteractions(storage);
+
+        DanglingAliasDeleter.terminate();
+        Mockito.verify(storage).deleteBuilds(new HashSet<Integer>(Arrays.asList(41, 42)));
+        Mockito.verify(storage).save();
+        // Looked up to key the pending save
+        Mockito.verify(storage, Mockito.atLeastOnce()).getJob();
 
         Mockito.verifyNoMoreInteractions(storage);
     }
@@ -100,10 +142,139 @@ public class AliasSettingTest {
         thenAttached("valid-alias", "1.480.3-SNAPSHOT");
     }
 
+    @Test
+    public void coalesceSavesOfTheSameProject() throws Exception {
+
+        final BuildAliasSetter setter = DummyProvider.buildWrapper("valid-alias");
+
+        final Environment environment = setter.setUp(build, null, listener);
+        environment.tearDown(build, listener);
+
+        AliasPersister.flush();
+        Mockito.verify(storage, Mockito.times(1)).save();
+    }
+
+    @Test
+    public void applyRetentionAfterAttaching() throws Exception {
+
+        final BuildAliasSetter setter = DummyProvider.buildWrapper("valid-alias");
+        setter.setMaxAliasedBuilds(10);
+
+        setter.setUp(build, null, listener);
+
+        Mockito.verify(storage).retainLatestBuilds(10);
+        thenAttached("valid-alias");
+    }
+
+    @Test
+    public void recordTimingOfEachProvider() throws Exception {
+
+        final BuildAliasSetter setter = new BuildAliasSetter(new DescribableList<AliasProvider, AliasProvider.Descriptor>(
+                null, Arrays.asList(new DummyProvider("first", "42"), new DummyProvider("second"))
+        ));
+
+        setter.setUp(build, null, listener);
+
+        final ArgumentCaptor<AliasTimingAction> captor = ArgumentCaptor.forClass(AliasTimingAction.class);
+        Mockito.verify(build).addAction(captor.capture());
+
+        final AliasTimingAction.Phase phase = captor.getValue().getPhases().get(0);
+        assertThat(phase.getName(), equalTo("setUp"));
+        assertThat(phase.getProviders().size(), equalTo(2));
+        assertThat(phase.getProviders().get(0).getAliases(), contains("first", "42"));
+        assertThat(phase.getProviders().get(0).getDurationMicros(), greaterThanOrEqualTo(0L));
+        assertThat(phase.getProviders().get(1).getAliases(), contains("second"));
+    }
+
+    @Test
+    public void mergeConcurrentlyEvaluatedProvidersInConfiguredOrder() throws Exception {
+
+        final AliasProvider slow = new DummyProvider("first", "shared") {
+            @Override
+            public List<String> names(final AbstractBuild<?, ?> build, final BuildListener listener) throws IOException, InterruptedException {
+
+                Thread.sleep(200);
+                return super.names(build, listener);
+            }
+        };
+
+        final BuildAliasSetter setter = new BuildAliasSetter(new DescribableList<AliasProvider, AliasProvider.Descriptor>(
+                null, Arrays.asList(slow, new DummyProvider("second", "shared"))
+        ));
+        setter.setEvaluateProvidersConcurrently(true);
+
+        setter.setUp(build, null, listener);
+
+        thenAttached("first", "shared", "second");
+    }
+
+    @Test
+    public void evaluateProvidersOnBuildThreadUnlessConfiguredOtherwise() throws Exception {
+
+        final List<Thread> threads = new CopyOnWriteArrayList<Thread>();
+        final AliasProvider first = new DummyProvider("first") {
+            @Override
+            public List<String> names(final AbstractBuild<?, ?> build, final BuildListener listener) throws IOException, InterruptedException {
+
+                threads.add(Thread.currentThread());
+                return super.names(build, listener);
+            }
+        };
+        final AliasProvider second = new DummyProvider("second") {
+            @Override
+            public List<String> names(final AbstractBuild<?, ?> build, final BuildListener listener) throws IOException, InterruptedException {
+
+                threads.add(Thread.currentThread());
+                return super.names(build, listener);
+            }
+        };
+
+        final BuildAliasSetter setter = new BuildAliasSetter(new DescribableList<AliasProvider, AliasProvider.Descriptor>(
+                null, Arrays.asList(first, second)
+        ));
+
+        setter.setUp(build, null, listener);
+        assertThat(threads, contains(Thread.currentThread(), Thread.currentThread()));
+
+        threads.clear();
+        setter.setEvaluateProvidersConcurrently(true);
+        setter.setUp(build, null, listener);
+        assertThat(threads.size(), equalTo(2));
+        assertThat(threads.contains(Thread.currentThread()), equalTo(true));
+    }
+
+    @Test
+    public void doNotReevaluateStartOnlyProvidersInTearDown() throws Exception {
+
+        final AliasProvider startOnly = new DummyProvider("valid-alias") {
+            @Override
+            public EvaluationPhase evaluationPhase() {
+
+                return EvaluationPhase.START;
+            }
+        };
+
+        final BuildAliasSetter setter = new BuildAliasSetter(new DescribableList<AliasProvider, AliasProvider.Descriptor>(
+                null, Arrays.asList(startOnly)
+        ));
+
+        final Environment environment = setter.setUp(build, null, listener);
+
+        thenAttached("valid-alias");
+
+        setUp();
+        environment.tearDown(build, listener);
+
+        Mockito.verifyZeroInteractions(storage);
+    }
+
     private void thenAttached(final String... aliases) throws IOException {
 
         Mockito.verify(storage).addAliases(build, new LinkedHashSet<String>(Arrays.asList(aliases)));
-        Mockito.verify(project).save();
+
+        AliasPersister.flush();
+        Mockito.verify(storage).save();
+        Mockito.verify(project, Mockito.never()).save();
 
         Mockito.verifyNoMoreInteractions(storage);
     }
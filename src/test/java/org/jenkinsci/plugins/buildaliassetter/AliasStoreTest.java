@@ -0,0 +1,192 @@
+package org.jenkinsci.plugins.buildaliassetter;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AliasStoreTest {
+
+    public @Rule TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void shouldBeEmptyWhenNotWritten() throws Exception {
+
+        final AliasStore store = new AliasStore(tmp.getRoot());
+
+        assertThat(store.read().size(), equalTo(0));
+    }
+
+    @Test
+    public void shouldReadWhatWasWritten() throws Exception {
+
+        final AliasStore store = new AliasStore(tmp.getRoot());
+
+        final Map<Integer, LinkedHashSet<String>> permalinks = new TreeMap<Integer, LinkedHashSet<String>>();
+        permalinks.put(42, aliases("b", "a"));
+        permalinks.put(43, aliases("a", "ünicode alias"));
+        store.compact(permalinks);
+
+        final Map<Integer, LinkedHashSet<String>> read = store.read();
+        assertThat(read, equalTo(permalinks));
+        assertThat(read.get(42), contains("b", "a"));
+    }
+
+    @Test
+    public void shouldReplaceContent() throws Exception {
+
+        final AliasStore store = new AliasStore(tmp.getRoot());
+
+        final Map<Integer, LinkedHashSet<String>> permalinks = new TreeMap<Integer, LinkedHashSet<String>>();
+        permalinks.put(42, aliases("a"));
+        store.compact(permalinks);
+
+        permalinks.remove(42);
+        store.compact(permalinks);
+
+        assertThat(store.read().size(), equalTo(0));
+        assertThat(tmp.getRoot().list(), equalTo(new String[] { AliasStore.FILE_NAME }));
+    }
+
+    @Test
+    public void shouldReplayJournalOnTopOfSnapshot() throws Exception {
+
+        final AliasStore store = new AliasStore(tmp.getRoot());
+
+        final Map<Integer, LinkedHashSet<String>> permalinks = new TreeMap<Integer, LinkedHashSet<String>>();
+        permalinks.put(41, aliases("a"));
+        permalinks.put(42, aliases("b"));
+        store.compact(permalinks);
+
+        store.append(Arrays.asList(
+                AliasStore.Record.add(42, aliases("c")),
+                AliasStore.Record.delete(41)
+        ));
+        store.append(Arrays.asList(
+                AliasStore.Record.add(43, aliases("a"))
+        ));
+
+        final Map<Integer, LinkedHashSet<String>> expected = new TreeMap<Integer, LinkedHashSet<String>>();
+        expected.put(42, aliases("b", "c"));
+        expected.put(43, aliases("a"));
+        assertThat(store.read(), equalTo(expected));
+
+        store.compact(store.read());
+        assertThat(store.journalSize(), equalTo(0L));
+        assertThat(store.read(), equalTo(expected));
+    }
+
+    @Test
+    public void shouldIgnoreTornJournalRecord() throws Exception {
+
+        final AliasStore store = new AliasStore(tmp.getRoot());
+        store.append(Arrays.asList(AliasStore.Record.add(42, aliases("a"))));
+        store.append(Arrays.asList(AliasStore.Record.add(43, aliases("b"))));
+
+        final File journal = new File(tmp.getRoot(), AliasStore.JOURNAL_NAME);
+        final RandomAccessFile raf = new RandomAccessFile(journal, "rw");
+        try {
+            raf.setLength(raf.length() - 1);
+        } finally {
+            raf.close();
+        }
+
+        final Map<Integer, LinkedHashSet<String>> expected = new TreeMap<Integer, LinkedHashSet<String>>();
+        expected.put(42, aliases("a"));
+        assertThat(store.read(), equalTo(expected));
+    }
+
+    @Test
+    public void shouldPersistBuildMetadata() throws Exception {
+
+        final AliasStore store = new AliasStore(tmp.getRoot());
+
+        final Map<Integer, LinkedHashSet<String>> permalinks = new TreeMap<Integer, LinkedHashSet<String>>();
+        permalinks.put(41, aliases("a"));
+        permalinks.put(42, aliases("b"));
+        final Map<Integer, BuildMetadata> metadata = new HashMap<Integer, BuildMetadata>();
+        metadata.put(41, new BuildMetadata(1000L, null, "#41"));
+        store.compact(permalinks, metadata);
+
+        store.append(Arrays.asList(
+                AliasStore.Record.metadata(41, new BuildMetadata(1000L, "FAILURE", "#41")),
+                AliasStore.Record.metadata(43, new BuildMetadata(3000L, null, null)),
+                AliasStore.Record.add(43, aliases("c")),
+                AliasStore.Record.delete(42)
+        ));
+
+        final Map<Integer, BuildMetadata> read = new HashMap<Integer, BuildMetadata>();
+        store.read(read);
+
+        assertThat(read.keySet(), containsInAnyOrder(41, 43));
+        assertThat(read.get(41).getResult(), equalTo("FAILURE"));
+        assertThat(read.get(41).getDisplayName(), equalTo("#41"));
+        assertThat(read.get(43).getTimestamp(), equalTo(3000L));
+        assertThat(read.get(43).getResult(), nullValue());
+    }
+
+    @Test
+    public void shouldRejectCorruptCountsAndIndexes() throws Exception {
+
+        final AliasStore store = new AliasStore(tmp.getRoot());
+        final Map<Integer, LinkedHashSet<String>> permalinks = new TreeMap<Integer, LinkedHashSet<String>>();
+        permalinks.put(42, aliases("a"));
+
+        // magic, version, name count, name "a", bucket count, build number, bucket size, name index
+        for (final int[] corruption: new int[][] {
+                { 8, Integer.MAX_VALUE }, { 8, -1 }, { 15, 0x10000000 }, { 23, Integer.MAX_VALUE }, { 27, 1 }, { 27, -1 }
+        }) {
+
+            store.compact(permalinks);
+            overwriteInt(new File(tmp.getRoot(), AliasStore.FILE_NAME), corruption[0], corruption[1]);
+            assertUnreadable(store);
+        }
+
+        store.compact(permalinks);
+        store.append(Arrays.asList(AliasStore.Record.add(43, aliases("b"))));
+        // operation, build number, alias count
+        overwriteInt(new File(tmp.getRoot(), AliasStore.JOURNAL_NAME), 5, -1);
+        assertUnreadable(store);
+    }
+
+    private void overwriteInt(final File file, final long offset, final int value) throws IOException {
+
+        final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.seek(offset);
+            raf.writeInt(value);
+        } finally {
+            raf.close();
+        }
+    }
+
+    private void assertUnreadable(final AliasStore store) {
+
+        try {
+            store.read();
+            fail("Corrupt store read");
+        } catch (final IOException ex) {
+            // Expected
+        }
+    }
+
+    private LinkedHashSet<String> aliases(final String... aliases) {
+
+        return new LinkedHashSet<String>(Arrays.asList(aliases));
+    }
+}
@@ -2,9 +2,12 @@ package org.jenkinsci.plugins.buildaliassetter;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.nullValue;
 import hudson.util.FormValidation;
 
+import java.util.regex.Pattern;
+
 import org.junit.Test;
 
 public class AliasValidationTest {
@@ -25,6 +28,13 @@ public class AliasValidationTest {
         assertThat(validation.getMessage(), containsString("lastBuild"));
     }
 
+    @Test
+    public void disallowAliasThatShadowsTheAliasAction() {
+
+        assertThat(AliasProvider.validateAlias("alias").getMessage(), containsString("alias"));
+        assertThat(AliasProvider.validateAlias("Alias").getMessage(), containsString("Alias"));
+    }
+
     @Test
     public void disallowEmptyAliases() {
 
@@ -40,4 +50,48 @@ public class AliasValidationTest {
 
         assertThat(validation, nullValue());
     }
+
+    @Test
+    public void detectIntegersTheWayParseIntDoes() {
+
+        for (final String candidate: new String[] {
+                "0", "-1", "+1", "2147483647", "-2147483648", "2147483648", "-2147483649",
+                "99999999999", "+", "-", "1a", "a1", "1.0", "--1", "\u0661\u0662"
+        }) {
+
+            boolean parsed;
+            try {
+
+                Integer.parseInt(candidate);
+                parsed = true;
+            } catch (final NumberFormatException ex) {
+
+                parsed = false;
+            }
+
+            assertThat(candidate, AliasValidator.isInteger(candidate), equalTo(parsed));
+        }
+    }
+
+    @Test
+    public void disallowBuildinPermalinkInAnyCase() {
+
+        assertThat(AliasProvider.validateAlias("LASTSUCCESSFULBUILD").getMessage(), containsString("permalink"));
+        assertThat(AliasProvider.validateAlias("lastsuccessfulbuild").getMessage(), containsString("permalink"));
+        assertThat(AliasProvider.validateAlias("lastSuccessfulBuild2"), nullValue());
+    }
+
+    @Test
+    public void enforceConfiguredPattern() {
+
+        AliasValidator.setPolicy(Pattern.compile("release-.*"));
+        try {
+
+            assertThat(AliasProvider.validateAlias("release-1.0"), nullValue());
+            assertThat(AliasProvider.validateAlias("snapshot").getMessage(), containsString("release-.*"));
+        } finally {
+
+            AliasValidator.setPolicy(null);
+        }
+    }
 }
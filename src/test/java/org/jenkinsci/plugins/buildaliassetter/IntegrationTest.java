@@ -23,26 +23,64 @@
  */
 package org.jenkinsci.plugins.buildaliassetter;
 
+import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
 
+import org.apache.commons.io.FileUtils;
 import org.jenkinsci.plugins.buildaliassetter.util.DummyProvider;
+import org.jenkinsci.plugins.tokenmacro.TokenMacro;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
 import org.junit.Rule;
 import org.junit.Test;
 import org.jvnet.hudson.test.Bug;
 import org.jvnet.hudson.test.Issue;
 import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.MockAuthorizationStrategy;
+import org.jvnet.hudson.test.MockFolder;
+import org.mockito.internal.util.reflection.Whitebox;
 
+import com.codahale.metrics.MetricRegistry;
+import com.gargoylesoftware.htmlunit.HttpMethod;
+import com.gargoylesoftware.htmlunit.WebRequest;
+import com.gargoylesoftware.htmlunit.WebResponse;
+import com.gargoylesoftware.htmlunit.html.HtmlPage;
+
+import hudson.cli.CLICommandInvoker;
+import hudson.matrix.AxisList;
+import hudson.matrix.MatrixBuild;
 import hudson.matrix.MatrixProject;
-import hudson.model.AbstractProject;
+import hudson.matrix.MatrixRun;
+import hudson.matrix.TextAxis;
 import hudson.model.Build;
+import hudson.model.FreeStyleBuild;
 import hudson.model.FreeStyleProject;
+import hudson.model.Item;
+import hudson.model.Job;
+import hudson.model.Result;
 import hudson.model.Run;
+import hudson.model.StreamBuildListener;
+import hudson.model.TaskListener;
 import hudson.model.TopLevelItem;
+import hudson.model.listeners.ItemListener;
 import hudson.model.PermalinkProjectAction.Permalink;
+import hudson.slaves.EnvironmentVariablesNodeProperty;
+import hudson.util.DescribableList;
+import jenkins.metrics.api.Metrics;
+import jenkins.model.Jenkins;
 
 public class IntegrationTest {
 
@@ -94,7 +132,394 @@ public class IntegrationTest {
         }
     }
 
-    private Run<?, ?> resolve(AbstractProject<?, ?> job, String alias) {
+    @Test
+    public void persistAliasesOutsideOfConfigXml() throws Exception {
+        FreeStyleProject p = j.jenkins.createProject(FreeStyleProject.class, "project");
+        p.getBuildWrappersList().add(DummyProvider.buildWrapper("persisted"));
+
+        j.buildAndAssertSuccess(p);
+        AliasPersister.flush();
+
+        assertFalse(p.getConfigFile().asString().contains("<permalinks"));
+        assertTrue(new AliasStore(p.getRootDir()).read().containsKey(1));
+
+        j.jenkins.reload();
+        p = j.jenkins.getItemByFullName("project", FreeStyleProject.class);
+        assertEquals(new Alias(1, "persisted"), p.getAction(PermalinkStorage.class).resolve("persisted"));
+    }
+
+    @Test
+    public void migrateAliasesFromConfigXml() throws Exception {
+        FreeStyleProject p = j.createFreeStyleProject("legacy");
+        j.buildAndAssertSuccess(p);
+
+        String config = p.getConfigFile().asString();
+        String legacy = config.replace("<properties/>", "<properties>"
+                + "<org.jenkinsci.plugins.buildaliassetter.PermalinkStorage>"
+                + "<permalinks><entry><int>1</int><linked-hash-set><string>legacy</string></linked-hash-set></entry></permalinks>"
+                + "</org.jenkinsci.plugins.buildaliassetter.PermalinkStorage>"
+                + "</properties>"
+        );
+        assertFalse("No properties element to replace", legacy.equals(config));
+        FileUtils.writeStringToFile(p.getConfigFile().getFile(), legacy, "UTF-8");
+
+        j.jenkins.reload();
+        p = j.jenkins.getItemByFullName("legacy", FreeStyleProject.class);
+        assertEquals(p.getBuildByNumber(1), resolve(p, "legacy"));
+        // Written before config.xml can drop the aliases
+        assertTrue(new AliasStore(p.getRootDir()).read().containsKey(1));
+
+        AliasPersister.flush();
+        assertFalse(p.getConfigFile().asString().contains("<permalinks"));
+
+        j.jenkins.reload();
+        p = j.jenkins.getItemByFullName("legacy", FreeStyleProject.class);
+        assertEquals(p.getBuildByNumber(1), resolve(p, "legacy"));
+    }
+
+    @Test
+    public void aliasPipelineBuilds() throws Exception {
+        WorkflowJob p = j.jenkins.createProject(WorkflowJob.class, "pipeline");
+        p.setDefinition(new CpsFlowDefinition("buildAlias 'release'; buildAlias names: ['stable', 'v1']", true));
+
+        WorkflowRun first = j.buildAndAssertSuccess(p);
+        assertEquals(first, resolve(p, "release"));
+        assertEquals(first, resolve(p, "v1"));
+
+        WorkflowRun second = j.buildAndAssertSuccess(p);
+        assertEquals(second, resolve(p, "stable"));
+        String json = j.createWebClient().goTo("job/pipeline/alias/stable/api/json", "application/json")
+                .getWebResponse().getContentAsString();
+        assertTrue(json, json.contains("\"number\":2"));
+
+        p.setDefinition(new CpsFlowDefinition("buildAlias 'lastBuild'", true));
+        j.assertBuildStatus(Result.FAILURE, p.scheduleBuild2(0));
+    }
+
+    @Test
+    public void retagBuildsInBatch() throws Exception {
+        FreeStyleProject a = j.createFreeStyleProject("a");
+        FreeStyleProject b = j.createFreeStyleProject("b");
+        j.buildAndAssertSuccess(a);
+        j.buildAndAssertSuccess(a);
+        j.buildAndAssertSuccess(b);
+
+        CLICommandInvoker.Result result = new CLICommandInvoker(j, "set-build-aliases").withStdin(new ByteArrayInputStream((
+                "{\"operations\": ["
+                + "{\"job\": \"a\", \"build\": 1, \"add\": [\"release\", \"stable\"]},"
+                + "{\"job\": \"a\", \"build\": 2, \"add\": [\"stable\"]},"
+                + "{\"job\": \"b\", \"build\": 1, \"add\": [\"release\"]}"
+                + "]}"
+        ).getBytes("UTF-8"))).invoke();
+        assertThat(result, CLICommandInvoker.Matcher.succeeded());
+        assertEquals(a.getBuildByNumber(1), resolve(a, "release"));
+        assertEquals(a.getBuildByNumber(2), resolve(a, "stable"));
+        assertEquals(b.getBuildByNumber(1), resolve(b, "release"));
+
+        AliasBatch.parse("{\"operations\": [{\"job\": \"a\", \"build\": 2, \"remove\": [\"stable\"]}]}").apply();
+        assertEquals(a.getBuildByNumber(1), resolve(a, "stable"));
+
+        result = new CLICommandInvoker(j, "set-build-aliases").withStdin(new ByteArrayInputStream(
+                "{\"operations\": [{\"job\": \"a\", \"build\": 1, \"add\": [\"x\"]}, {\"job\": \"a\", \"build\": 7, \"add\": [\"y\"]}]}"
+                .getBytes("UTF-8"))).invoke();
+        assertThat(result, CLICommandInvoker.Matcher.failedWith(3));
+        assertNull("Batch applied partially", a.getProperty(PermalinkStorage.class).resolve("x"));
+    }
+
+    @Test
+    public void retagBuildsInBatchOverRest() throws Exception {
+        FreeStyleProject a = j.createFreeStyleProject("a");
+        j.buildAndAssertSuccess(a);
+
+        j.jenkins.setSecurityRealm(j.createDummySecurityRealm());
+        j.jenkins.setAuthorizationStrategy(new MockAuthorizationStrategy()
+                .grant(Jenkins.ADMINISTER).everywhere().to("admin")
+                .grant(Jenkins.READ, Item.READ).everywhere().to("reader")
+        );
+
+        JenkinsRule.WebClient wc = j.createWebClient().login("admin");
+        wc.getOptions().setThrowExceptionOnFailingStatusCode(false);
+
+        WebResponse rsp = postBatch(wc, "{\"operations\": [{\"job\": \"a\", \"build\": 1, \"add\": [\"release\"]}]}");
+        assertEquals(200, rsp.getStatusCode());
+        assertTrue(rsp.getContentAsString(), rsp.getContentAsString().contains("\"a\":1"));
+        assertEquals(a.getBuildByNumber(1), resolve(a, "release"));
+
+        rsp = postBatch(wc, "{\"operations\": [{\"job\": \"a\", \"build\": 7, \"add\": [\"missing\"]}]}");
+        assertEquals(400, rsp.getStatusCode());
+        assertTrue(rsp.getContentAsString(), rsp.getContentAsString().contains("No such build: a #7"));
+        assertNull(a.getProperty(PermalinkStorage.class).resolve("missing"));
+
+        wc = j.createWebClient().login("reader");
+        wc.getOptions().setThrowExceptionOnFailingStatusCode(false);
+        rsp = postBatch(wc, "{\"operations\": [{\"job\": \"a\", \"build\": 1, \"add\": [\"forbidden\"]}]}");
+        assertEquals(403, rsp.getStatusCode());
+        assertNull(a.getProperty(PermalinkStorage.class).resolve("forbidden"));
+    }
+
+    private WebResponse postBatch(JenkinsRule.WebClient wc, String json) throws Exception {
+        WebRequest req = new WebRequest(new URL(j.getURL(), "buildAliases/batch"), HttpMethod.POST);
+        req.setAdditionalHeader("Content-Type", "application/json");
+        req.setRequestBody(json);
+        wc.addCrumb(req);
+        return wc.getPage(req).getWebResponse();
+    }
+
+    @Test
+    public void exportAliasesOfAllJobs() throws Exception {
+        FreeStyleProject p = j.createFreeStyleProject("p");
+        p.getBuildWrappersList().add(DummyProvider.buildWrapper("a", "b,c"));
+        long first = j.buildAndAssertSuccess(p).getTimeInMillis();
+        long second = j.buildAndAssertSuccess(p).getTimeInMillis();
+
+        JenkinsRule.WebClient wc = j.createWebClient();
+        String csv = wc.goTo("buildAliases/export?format=csv&since=" + second, "text/csv").getWebResponse().getContentAsString();
+        assertEquals(
+                "job,alias,buildNumber,timestamp,result\np,a,2," + second + ",SUCCESS\np,\"b,c\",2," + second + ",SUCCESS\n",
+                csv
+        );
+
+        String json = wc.goTo("buildAliases/export?offset=1&limit=2", "application/json").getWebResponse().getContentAsString();
+        assertEquals(
+                "{\"aliases\":["
+                + "{\"job\":\"p\",\"alias\":\"b,c\",\"buildNumber\":1,\"timestamp\":" + first + ",\"result\":\"SUCCESS\"},"
+                + "{\"job\":\"p\",\"alias\":\"a\",\"buildNumber\":2,\"timestamp\":" + second + ",\"result\":\"SUCCESS\"}"
+                + "]}",
+                json
+        );
+
+        AliasPersister.flush();
+        j.jenkins.reload();
+        assertEquals(json, wc.goTo("buildAliases/export?offset=1&limit=2", "application/json").getWebResponse().getContentAsString());
+        PermalinkStorage storage = j.jenkins.getItemByFullName("p", FreeStyleProject.class).getProperty(PermalinkStorage.class);
+        assertFalse("Exported storage loaded", (Boolean) Whitebox.getInternalState(storage, "loaded"));
+    }
+
+    @Test
+    public void listAliasesWithoutLoadingBuilds() throws Exception {
+        FreeStyleProject p = j.createFreeStyleProject("p");
+        p.getBuildWrappersList().add(DummyProvider.buildWrapper("tagged"));
+        FreeStyleBuild build = j.buildAndAssertSuccess(p);
+        AliasPersister.flush();
+
+        j.jenkins.reload();
+        p = j.jenkins.getItemByFullName("p", FreeStyleProject.class);
+
+        Alias alias = (Alias) p.getAction(PermalinkStorage.class).resolve("tagged");
+        assertEquals(build.getTimeInMillis(), alias.getMetadata().getTimestamp());
+        assertEquals("SUCCESS", alias.getMetadata().getResult());
+        assertEquals("#1", alias.getMetadata().getDisplayName());
+
+        j.createWebClient().goTo("job/p/alias/");
+    }
+
+    @Test
+    public void relocateJobMovedIntoFolderOfTheSameName() throws Exception {
+        FreeStyleProject x = j.createFreeStyleProject("x");
+        x.getBuildWrappersList().add(DummyProvider.buildWrapper("moved"));
+        j.buildAndAssertSuccess(x);
+        assertEquals("[x #1]", GlobalAliasIndex.find("moved").toString());
+
+        // New location still starts with the old name followed by a slash
+        j.jenkins.getExtensionList(ItemListener.class).get(GlobalAliasIndex.ItemChangeListener.class)
+                .onLocationChanged(x, "x", "x/x");
+        assertEquals("[x/x #1]", GlobalAliasIndex.find("moved").toString());
+    }
+
+    @Test
+    public void encodeAliasLinks() throws Exception {
+        FreeStyleProject p = j.createFreeStyleProject("p");
+        p.getBuildWrappersList().add(DummyProvider.buildWrapper("release/1.0#rc?x"));
+        j.buildAndAssertSuccess(p);
+
+        HtmlPage page = j.createWebClient().goTo("job/p/alias/");
+        assertEquals("release%2F1.0%23rc%3Fx/", page.getAnchorByText("release/1.0#rc?x").getHrefAttribute());
+    }
+
+    @Test
+    public void resolveAliasThroughRootAction() throws Exception {
+        MockFolder folder = j.createFolder("f");
+        FreeStyleProject p = folder.createProject(FreeStyleProject.class, "p");
+        p.getBuildWrappersList().add(DummyProvider.buildWrapper("release-1.0"));
+        FreeStyleBuild build = j.buildAndAssertSuccess(p);
+
+        JenkinsRule.WebClient wc = j.createWebClient();
+        HtmlPage page = wc.goTo("buildAliases/resolve/f/p/release-1.0");
+        assertEquals(j.getURL() + build.getUrl(), page.getUrl().toString());
+
+        wc.assertFails("buildAliases/resolve/f/p/missing", 404);
+        wc.assertFails("buildAliases/resolve/missing/release-1.0", 404);
+    }
+
+    @Test
+    public void findAliasAcrossJobs() throws Exception {
+        FreeStyleProject a = j.createFreeStyleProject("a");
+        a.getBuildWrappersList().add(DummyProvider.buildWrapper("release-4.2"));
+        j.buildAndAssertSuccess(a);
+
+        assertEquals("[a #1]", GlobalAliasIndex.find("release-4.2").toString());
+
+        FreeStyleProject b = j.createFreeStyleProject("b");
+        b.getBuildWrappersList().add(DummyProvider.buildWrapper("release-4.2"));
+        j.buildAndAssertSuccess(b);
+        j.buildAndAssertSuccess(b);
+        assertEquals("[a #1, b #1, b #2]", GlobalAliasIndex.find("release-4.2").toString());
+
+        b.getBuildByNumber(1).delete();
+        BuildAliasSetter.DanglingAliasDeleter.flush();
+        a.renameTo("renamed");
+        assertEquals("[b #2, renamed #1]", GlobalAliasIndex.find("release-4.2").toString());
+
+        b.delete();
+        String json = j.createWebClient().goTo("buildAliases/search?q=release-4.2", "application/json")
+                .getWebResponse().getContentAsString();
+        assertTrue(json, json.contains("\"job\":\"renamed\",\"buildNumber\":1"));
+        assertFalse(json, json.contains("\"job\":\"b\""));
+    }
+
+    @Test
+    public void propagateAliasesToMatrixConfigurations() throws Exception {
+        MatrixProject p = j.jenkins.createProject(MatrixProject.class, "matrix");
+        p.setAxes(new AxisList(new TextAxis("axis", "a", "b", "c")));
+        BuildAliasSetter setter = DummyProvider.buildWrapper("release");
+        setter.setPropagateToConfigurations(true);
+        p.getBuildWrappersList().add(setter);
+
+        MatrixBuild build = j.buildAndAssertSuccess(p);
+        assertEquals(build, resolve(p, "release"));
+        assertEquals(3, build.getExactRuns().size());
+        for (MatrixRun run : build.getExactRuns()) {
+            assertEquals(run, resolve(run.getParent(), "release"));
+            assertNull("Providers evaluated for configuration", run.getAction(AliasTimingAction.class));
+        }
+
+        List<AliasTimingAction.Phase> phases = build.getAction(AliasTimingAction.class).getPhases();
+        assertEquals("propagate", phases.get(phases.size() - 1).getName());
+    }
+
+    @Test
+    public void indexAliasesWithoutLoadingStorages() throws Exception {
+        FreeStyleProject p = j.createFreeStyleProject("p");
+        p.getBuildWrappersList().add(DummyProvider.buildWrapper("indexed"));
+        j.buildAndAssertSuccess(p);
+        AliasPersister.flush();
+
+        j.jenkins.reload();
+        assertEquals("[p #1]", GlobalAliasIndex.find("indexed").toString());
+
+        PermalinkStorage storage = j.jenkins.getItemByFullName("p", FreeStyleProject.class).getProperty(PermalinkStorage.class);
+        assertFalse("Indexed storage loaded", (Boolean) Whitebox.getInternalState(storage, "loaded"));
+    }
+
+    @Test
+    public void expandTemplatesLikeTokenMacro() throws Exception {
+        j.jenkins.getGlobalNodeProperties().add(new EnvironmentVariablesNodeProperty(
+                new EnvironmentVariablesNodeProperty.Entry("X", "x-value"),
+                new EnvironmentVariablesNodeProperty.Entry("Q\"D", "quoted-value")
+        ));
+        FreeStyleBuild build = j.buildAndAssertSuccess(j.createFreeStyleProject("p"));
+
+        for (String template: new String[] {
+                "${BUILD_NUMBER}", "$BUILD_NUMBER", "${ENV,var=\"X\"}", "${ENV, var=\"Q\\\"D\"}", "$${BUILD_NUMBER}"
+        }) {
+            assertEquals(template,
+                    TokenMacro.expand(build, TaskListener.NULL, template),
+                    MacroTemplate.compile(template).expand(build, TaskListener.NULL)
+            );
+        }
+
+        assertEquals("quoted-value", MacroTemplate.compile("${ENV, var=\"Q\\\"D\"}").expand(build, TaskListener.NULL));
+        assertNull("Falls back to token-macro", MacroTemplate.compile("$${BUILD_NUMBER}").macroNames());
+    }
+
+    @Test
+    public void followJobsWithStorageGauges() throws Exception {
+        MockFolder folder = j.createFolder("f");
+        FreeStyleProject p = folder.createProject(FreeStyleProject.class, "p");
+        p.getBuildWrappersList().add(DummyProvider.buildWrapper("measured"));
+        j.buildAndAssertSuccess(p);
+
+        MetricRegistry registry = Metrics.metricRegistry();
+        assertEquals(1, registry.getGauges().get("buildaliassetter.storage.builds.f/p").getValue());
+
+        p.renameTo("renamed");
+        assertFalse(registry.getGauges().containsKey("buildaliassetter.storage.builds.f/p"));
+        assertEquals(1, registry.getGauges().get("buildaliassetter.storage.builds.f/renamed").getValue());
+
+        folder.delete();
+        assertFalse(registry.getGauges().containsKey("buildaliassetter.storage.builds.f/renamed"));
+        assertFalse(registry.getGauges().containsKey("buildaliassetter.storage.bytes.f/renamed"));
+    }
+
+    @Test
+    public void updateMetadataWithoutLoadingStorage() throws Exception {
+        FreeStyleProject p = j.createFreeStyleProject("p");
+        p.getBuildWrappersList().add(DummyProvider.buildWrapper("tagged"));
+        j.buildAndAssertSuccess(p);
+        AliasPersister.flush();
+
+        j.jenkins.reload();
+        p = j.jenkins.getItemByFullName("p", FreeStyleProject.class);
+        PermalinkStorage storage = p.getProperty(PermalinkStorage.class);
+        p.getBuildWrappersList().remove(BuildAliasSetter.class);
+        j.buildAndAssertSuccess(p);
+        assertFalse("Loaded for build without alias setter", (Boolean) Whitebox.getInternalState(storage, "loaded"));
+        assertEquals(0, storage.store().journalSize());
+
+        p.getBuildWrappersList().add(DummyProvider.buildWrapper());
+        j.buildAndAssertSuccess(p);
+        assertFalse("Loaded for build without aliases", (Boolean) Whitebox.getInternalState(storage, "loaded"));
+        assertTrue("Metadata not journaled", storage.store().journalSize() > 0);
+
+        assertEquals(p.getBuildByNumber(1), storage.resolve("tagged").resolve(p));
+        assertEquals(1, storage.aliasedBuilds());
+    }
+
+    @Test
+    public void applyPendingChangesToReloadedStorage() throws Exception {
+        FreeStyleProject p = j.createFreeStyleProject("p");
+        p.getBuildWrappersList().add(DummyProvider.buildWrapper("first"));
+        j.buildAndAssertSuccess(p);
+        p.getBuildWrappersList().remove(BuildAliasSetter.class);
+        p.getBuildWrappersList().add(DummyProvider.buildWrapper("second"));
+        j.buildAndAssertSuccess(p);
+        AliasPersister.flush();
+
+        p.getBuildByNumber(1).delete();
+        j.jenkins.reload();
+        BuildAliasSetter.DanglingAliasDeleter.flush();
+        AliasPersister.flush();
+
+        j.jenkins.reload();
+        p = j.jenkins.getItemByFullName("p", FreeStyleProject.class);
+        PermalinkStorage storage = p.getProperty(PermalinkStorage.class);
+        assertNull(storage.resolve("first"));
+        assertEquals(p.getBuildByNumber(2), storage.resolve("second").resolve(p));
+    }
+
+    @Test
+    public void splitMacroExpansionIntoAliases() throws Exception {
+        j.jenkins.getGlobalNodeProperties().add(new EnvironmentVariablesNodeProperty(
+                new EnvironmentVariablesNodeProperty.Entry("ALIASES", "a, ,b,,a,  c ")
+        ));
+        MultiAliasTokenMacroProvider provider = new MultiAliasTokenMacroProvider("${ENV,var=\"ALIASES\"}");
+        provider.setDelimiter(",");
+
+        FreeStyleProject p = j.createFreeStyleProject("p");
+        p.getBuildWrappersList().add(new BuildAliasSetter(new DescribableList<AliasProvider, AliasProvider.Descriptor>(
+                null, Collections.<AliasProvider>singletonList(provider)
+        )));
+        FreeStyleBuild build = j.buildAndAssertSuccess(p);
+
+        StreamBuildListener listener = new StreamBuildListener(new ByteArrayOutputStream(), StandardCharsets.UTF_8);
+        assertEquals(Arrays.asList("a", "b", "a", "c"), provider.names(build, listener));
+        for (String alias: new String[] { "a", "b", "c" }) {
+            assertEquals(build, resolve(p, alias));
+        }
+        assertEquals(3, p.getProperty(PermalinkStorage.class).getPermalinks().size());
+    }
+
+    private Run<?, ?> resolve(Job<?, ?> job, String alias) {
         for (Permalink p : job.getPermalinks()) {
             if(p.getId().equals(alias))
                 return p.resolve(job);
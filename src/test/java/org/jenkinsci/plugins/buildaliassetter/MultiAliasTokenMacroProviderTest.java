@@ -0,0 +1,39 @@
+package org.jenkinsci.plugins.buildaliassetter;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+public class MultiAliasTokenMacroProviderTest {
+
+    @Test
+    public void splitByLines() {
+
+        assertThat(
+                MultiAliasTokenMacroProvider.split("master\r\n1.0 \n\n  abc123\r", null),
+                contains("master", "1.0", "abc123")
+        );
+    }
+
+    @Test
+    public void splitByDelimiter() {
+
+        assertThat(
+                MultiAliasTokenMacroProvider.split("master, 1.0,,abc123,", ","),
+                contains("master", "1.0", "abc123")
+        );
+        assertThat(
+                MultiAliasTokenMacroProvider.split("a::b", "::"),
+                contains("a", "b")
+        );
+    }
+
+    @Test
+    public void ignoreEmptyExpansion() {
+
+        assertThat(MultiAliasTokenMacroProvider.split("", null), Matchers.<String>emptyIterable());
+        assertThat(MultiAliasTokenMacroProvider.split(" ", ","), Matchers.<String>emptyIterable());
+    }
+}
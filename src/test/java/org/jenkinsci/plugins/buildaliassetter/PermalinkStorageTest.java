@@ -2,23 +2,41 @@ package org.jenkinsci.plugins.buildaliassetter;
 
 import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.hamcrest.MatcherAssert.assertThat;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import hudson.model.AbstractBuild;
+import hudson.model.Job;
 import hudson.model.PermalinkProjectAction.Permalink;
 
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
+import org.mockito.internal.util.reflection.Whitebox;
 
 public class PermalinkStorageTest {
 
     @Mock private AbstractBuild<?, ?> someBuild;
     @Mock private AbstractBuild<?, ?> someOtherBuild;
 
+    public @Rule TemporaryFolder tmp = new TemporaryFolder();
+
     private final PermalinkStorage storage = new PermalinkStorage();
 
     @Before
@@ -71,6 +89,231 @@ public class PermalinkStorageTest {
         assertThat(storage.getPermalinks().size(), equalTo(0));
     }
 
+    @Test
+    public void deletingLatestBuildShouldFallBackToPreviousOne() {
+
+        storage.addAliases(someBuild, aliases("a", "b"));
+        storage.addAliases(someOtherBuild, aliases("a"));
+
+        assertThat(storage.getPermalinks(), contains(alias(43, "a"), alias(42, "b")));
+
+        storage.deleteAliases(someOtherBuild);
+
+        assertThat(storage.getPermalinks(), contains(alias(42, "a"), alias(42, "b")));
+    }
+
+    @Test
+    public void shouldReuseSnapshotUntilModified() {
+
+        storage.addAliases(someBuild, aliases("a"));
+
+        final List<Permalink> snapshot = storage.getPermalinks();
+        assertThat(storage.getPermalinks(), sameInstance(snapshot));
+
+        storage.addAliases(someBuild, aliases("a"));
+        assertThat(storage.getPermalinks(), sameInstance(snapshot));
+
+        storage.addAliases(someOtherBuild, aliases("b"));
+        assertThat(storage.getPermalinks(), not(sameInstance(snapshot)));
+    }
+
+    @Test
+    public void shouldResolveAliasToLatestBuild() {
+
+        storage.addAliases(someBuild, aliases("a", "b"));
+        storage.addAliases(someOtherBuild, aliases("a"));
+
+        assertThat(storage.resolve("a"), equalTo(alias(43, "a")));
+        assertThat(storage.resolve("b"), equalTo(alias(42, "b")));
+        assertThat(storage.resolve("c"), nullValue());
+    }
+
+    @Test
+    public void shouldTolerateConcurrentWriters() throws Exception {
+
+        final int builds = 200;
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+
+            final List<Future<?>> futures = new ArrayList<Future<?>>(builds);
+            for (int i = 1; i <= builds; i++) {
+
+                final AbstractBuild<?, ?> build = Mockito.mock(AbstractBuild.class);
+                Mockito.when(build.getNumber()).thenReturn(i);
+                futures.add(executor.submit(new Runnable() {
+                    public void run() {
+
+                        storage.addAliases(build, aliases("shared", "build-" + build.getNumber()));
+                        storage.getPermalinks();
+                    }
+                }));
+            }
+
+            for (final Future<?> future: futures) {
+
+                future.get();
+            }
+        } finally {
+
+            executor.shutdownNow();
+        }
+
+        assertThat(storage.getPermalinks().size(), equalTo(builds + 1));
+        assertThat(storage.resolve("shared"), equalTo(alias(builds, "shared")));
+    }
+
+    @Test
+    public void shouldNotLoseAliasesAddedWhileCompacting() throws Exception {
+
+        final Job<?, ?> job = Mockito.mock(Job.class);
+        Mockito.when(job.getRootDir()).thenReturn(tmp.getRoot());
+        Whitebox.setInternalState(storage, "owner", job);
+
+        final int builds = 500;
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+
+            final List<Future<?>> futures = new ArrayList<Future<?>>(builds);
+            for (int i = 1; i <= builds; i++) {
+
+                final AbstractBuild<?, ?> build = mockBuild(i);
+                futures.add(executor.submit(new Runnable() {
+                    public void run() {
+
+                        storage.addAliases(build, aliases("build-" + build.getNumber()));
+                    }
+                }));
+            }
+
+            for (final Future<?> future: futures) {
+
+                while (!future.isDone()) {
+
+                    Whitebox.setInternalState(storage, "compact", true);
+                    storage.save();
+                }
+            }
+        } finally {
+
+            executor.shutdownNow();
+        }
+
+        Whitebox.setInternalState(storage, "compact", true);
+        storage.save();
+
+        assertThat(new AliasStore(tmp.getRoot()).read().size(), equalTo(builds));
+    }
+
+    @Test
+    public void shouldLoadAliasesLazily() throws Exception {
+
+        final Map<Integer, LinkedHashSet<String>> stored = new TreeMap<Integer, LinkedHashSet<String>>();
+        stored.put(41, aliases("a"));
+        new AliasStore(tmp.getRoot()).compact(stored);
+
+        final Job<?, ?> job = Mockito.mock(Job.class);
+        Mockito.when(job.getRootDir()).thenReturn(tmp.getRoot());
+        Whitebox.setInternalState(storage, "owner", job);
+
+        Mockito.verify(job, Mockito.never()).getRootDir();
+
+        storage.addAliases(someBuild, aliases("b"));
+
+        assertThat(storage.getPermalinks(), contains(alias(41, "a"), alias(42, "b")));
+    }
+
+    @Test
+    public void shouldNotRewriteUnreadableStore() throws Exception {
+
+        final File file = new File(tmp.getRoot(), AliasStore.FILE_NAME);
+        final byte[] corrupted = "not an alias store".getBytes("UTF-8");
+        Files.write(file.toPath(), corrupted);
+        new AliasStore(tmp.getRoot()).append(Arrays.asList(AliasStore.Record.add(41, aliases("a"))));
+
+        final Job<?, ?> job = Mockito.mock(Job.class);
+        Mockito.when(job.getRootDir()).thenReturn(tmp.getRoot());
+        Whitebox.setInternalState(storage, "owner", job);
+
+        storage.addAliases(someBuild, aliases("b"));
+        Whitebox.setInternalState(storage, "compact", true);
+        storage.save();
+
+        assertThat(Files.readAllBytes(file.toPath()), equalTo(corrupted));
+        assertThat(new File(tmp.getRoot(), AliasStore.JOURNAL_NAME).length(), not(equalTo(0L)));
+    }
+
+    @Test
+    public void shouldRetainLatestAliasedBuilds() {
+
+        for (int i = 1; i <= 5; i++) {
+
+            final AbstractBuild<?, ?> build = Mockito.mock(AbstractBuild.class);
+            Mockito.when(build.getNumber()).thenReturn(i);
+            storage.addAliases(build, aliases("latest", "build-" + i));
+        }
+
+        storage.retainLatestBuilds(2);
+
+        assertThat(storage.getPermalinks(), contains(alias(4, "build-4"), alias(5, "build-5"), alias(5, "latest")));
+
+        storage.retainLatestBuilds(2);
+        assertThat(storage.getPermalinks().size(), equalTo(3));
+    }
+
+    @Test
+    public void shouldRetainAliasHistory() {
+
+        for (int i = 1; i <= 5; i++) {
+
+            final AbstractBuild<?, ?> build = Mockito.mock(AbstractBuild.class);
+            Mockito.when(build.getNumber()).thenReturn(i);
+            storage.addAliases(build, aliases("nightly", "build-" + i));
+        }
+
+        storage.retainAliasHistory(aliases("nightly"), 1);
+        storage.deleteAliases(mockBuild(5));
+        assertThat(storage.resolve("nightly"), equalTo(alias(4, "nightly")));
+
+        storage.retainAliasHistory(aliases("nightly"), 0);
+        storage.deleteAliases(mockBuild(4));
+        assertThat(storage.resolve("nightly"), nullValue());
+        assertThat(storage.resolve("build-3"), equalTo(alias(3, "build-3")));
+    }
+
+    @Test
+    public void shouldShareAliasNamesAcrossStorages() {
+
+        final PermalinkStorage otherStorage = new PermalinkStorage();
+
+        storage.addAliases(someBuild, aliases(new String("shared")));
+        otherStorage.addAliases(someOtherBuild, aliases(new String("shared")));
+
+        assertThat(storage.resolve("shared").getId(), sameInstance(otherStorage.resolve("shared").getId()));
+    }
+
+    @Test
+    public void shouldCountLookups() {
+
+        storage.addAliases(someBuild, aliases("a"));
+
+        final AliasMetrics metrics = AliasMetrics.get();
+        final long lookups = metrics.getLookups();
+        final long misses = metrics.getLookupMisses();
+
+        storage.resolve("a");
+        storage.resolve("b");
+
+        assertThat(metrics.getLookups() - lookups, equalTo(2L));
+        assertThat(metrics.getLookupMisses() - misses, equalTo(1L));
+    }
+
+    private AbstractBuild<?, ?> mockBuild(final int number) {
+
+        final AbstractBuild<?, ?> build = Mockito.mock(AbstractBuild.class);
+        Mockito.when(build.getNumber()).thenReturn(number);
+        return build;
+    }
+
     private LinkedHashSet<String> aliases(final String... aliases) {
 
         return new LinkedHashSet<String>(Arrays.asList(aliases));
@@ -0,0 +1,55 @@
+package org.jenkinsci.plugins.buildaliassetter;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+import org.hamcrest.Matchers;
+import org.jenkinsci.plugins.buildaliassetter.AliasProvider.EvaluationPhase;
+import org.junit.Test;
+
+public class TokenMacroAliasProviderTest {
+
+    @Test
+    public void evaluateStableTemplatesAtStartOnly() {
+
+        assertThat(phase("constant-alias"), equalTo(EvaluationPhase.START));
+        assertThat(phase("build-${BUILD_NUMBER}"), equalTo(EvaluationPhase.START));
+        assertThat(phase("$JOB_NAME-${ENV,var=\"GIT_COMMIT\"}"), equalTo(EvaluationPhase.START));
+    }
+
+    @Test
+    public void evaluateOtherTemplatesTwice() {
+
+        assertThat(phase("${BUILD_STATUS}"), equalTo(EvaluationPhase.BOTH));
+        assertThat(phase("${BUILD_NUMBER}-${PROPFILE,file=\"version.properties\",property=\"version\"}"), equalTo(EvaluationPhase.BOTH));
+    }
+
+    @Test
+    public void parseTemplateOnce() {
+
+        assertThat(MacroTemplate.compile("constant").macroNames(), Matchers.<String>emptyIterable());
+        assertThat(
+                MacroTemplate.compile("$JOB_NAME-${ENV, var=\"GIT_COMMIT\"}-${PROPFILE,file=\"v.properties\",depth=-1,quiet=true}").macroNames(),
+                contains("JOB_NAME", "ENV", "PROPFILE")
+        );
+    }
+
+    @Test
+    public void leaveUnsupportedSyntaxToTokenMacro() {
+
+        assertThat(MacroTemplate.compile("${BUILD_NUMBER").macroNames(), nullValue());
+        assertThat(MacroTemplate.compile("${ENV,var=\"A\\q\"}").macroNames(), nullValue());
+        assertThat(MacroTemplate.compile("$$").macroNames(), nullValue());
+        assertThat(MacroTemplate.compile("${PROPFILE,file=v.properties}").macroNames(), nullValue());
+        assertThat(MacroTemplate.compile("${PROPFILE,file='v.properties'}").macroNames(), nullValue());
+        assertThat(MacroTemplate.compile("${ENV,var=\"A\\n\"}").macroNames(), nullValue());
+        assertThat(phase("${BUILD_NUMBER"), equalTo(EvaluationPhase.BOTH));
+    }
+
+    private EvaluationPhase phase(final String template) {
+
+        return new TokenMacroAliasProvider(template).evaluationPhase();
+    }
+}